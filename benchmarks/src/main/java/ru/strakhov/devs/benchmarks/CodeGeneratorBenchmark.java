@@ -0,0 +1,45 @@
+package ru.strakhov.devs.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.strakhov.devs.generator.PostfixCodeGenerator;
+import ru.strakhov.devs.generator.ThreeAddressCodeGenerator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Генерация трехадресного кода и постфиксной записи по уже упрощенному дереву
+ * вместе с выводом результата в поток. Генераторы формируют текст только при записи,
+ * поэтому без вывода постфиксная генерация сводится к сохранению ссылки на дерево
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodeGeneratorBenchmark {
+
+    @Benchmark
+    public void threeAddressCodeOutput(PipelineState state, Blackhole blackhole) throws IOException {
+        ThreeAddressCodeGenerator generator = new ThreeAddressCodeGenerator(state.lexicalAnalyzer);
+        generator.generate(state.unit);
+        generator.writeCode(Writer.nullWriter());
+        blackhole.consume(generator);
+    }
+
+    @Benchmark
+    public void postfixOutput(PipelineState state, Blackhole blackhole) throws IOException {
+        PostfixCodeGenerator generator = new PostfixCodeGenerator(state.lexicalAnalyzer);
+        generator.generate(state.unit);
+        generator.writeCode(Writer.nullWriter());
+        blackhole.consume(generator);
+    }
+}
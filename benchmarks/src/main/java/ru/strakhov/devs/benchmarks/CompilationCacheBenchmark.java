@@ -0,0 +1,77 @@
+package ru.strakhov.devs.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.strakhov.devs.cache.CompilationCache;
+import ru.strakhov.devs.manager.BufferedOutputSink;
+import ru.strakhov.devs.starter.ExpressionProcessor;
+import ru.strakhov.devs.workload.ExpressionGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Повторное выражение: ответ из кэша в памяти (хеш нормализованного текста и выдача
+ * сохраненных файлов) против полной компиляции во всех режимах сразу
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompilationCacheBenchmark {
+
+    @State(Scope.Thread)
+    public static class CacheState {
+        @Param({"10", "1000"})
+        public int tokens;
+
+        @Param("42")
+        public long seed;
+
+        public String expression;
+        public ExpressionProcessor cached;
+        public ExpressionProcessor uncached;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            ExpressionGenerator generator = new ExpressionGenerator(seed);
+            expression = generator.generate(tokens).getExpression();
+            cached = processor(new CompilationCache());
+            uncached = processor(null);
+            // Первый вызов заполняет кэш, дальше измеряются только попадания
+            cached.process(expression, new BufferedOutputSink(),
+                    ExpressionProcessor.TOKENS_FILE, ExpressionProcessor.SYMBOLS_FILE);
+        }
+
+        private static ExpressionProcessor processor(CompilationCache cache) {
+            ExpressionProcessor expressionProcessor = new ExpressionProcessor();
+            expressionProcessor.setCurrentMode("all");
+            expressionProcessor.setCache(cache);
+            return expressionProcessor;
+        }
+    }
+
+    @Benchmark
+    public BufferedOutputSink cacheHit(CacheState state) {
+        BufferedOutputSink sink = new BufferedOutputSink();
+        state.cached.process(state.expression, sink, ExpressionProcessor.TOKENS_FILE, ExpressionProcessor.SYMBOLS_FILE);
+        return sink;
+    }
+
+    @Benchmark
+    public BufferedOutputSink compile(CacheState state) {
+        BufferedOutputSink sink = new BufferedOutputSink();
+        state.uncached.process(state.expression, sink, ExpressionProcessor.TOKENS_FILE, ExpressionProcessor.SYMBOLS_FILE);
+        return sink;
+    }
+}
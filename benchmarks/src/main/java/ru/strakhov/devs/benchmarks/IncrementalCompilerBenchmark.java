@@ -0,0 +1,119 @@
+package ru.strakhov.devs.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.strakhov.devs.analyzer.CompilationUnit;
+import ru.strakhov.devs.analyzer.IncrementalCompiler;
+import ru.strakhov.devs.lexical_object.entity.VariableType;
+import ru.strakhov.devs.parser.syntax.SyntaxTree;
+import ru.strakhov.devs.workload.ExpressionGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка правки документа в середине выражения против компиляции нового текста с нуля.
+ * Каждый вызов делает правку и обратную ей, поэтому документ между вызовами не растет
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IncrementalCompilerBenchmark {
+
+    @State(Scope.Thread)
+    public static class DocumentState {
+        @Param({"1000", "100000"})
+        public int tokens;
+
+        @Param({"4"})
+        public int depth;
+
+        @Param("42")
+        public long seed;
+
+        public String expression;
+        public IncrementalCompiler document;
+        public int constantEnd;   // Позиция сразу после константы в середине выражения
+        public int identifierEnd; // Позиция сразу после имени идентификатора в середине выражения
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            ExpressionGenerator generator = new ExpressionGenerator(seed);
+            generator.setDepth(depth);
+            generator.setIdentifiers(256);
+            expression = generator.generate(tokens).getExpression();
+            document = new IncrementalCompiler(expression);
+            document.getSyntaxTree();
+            constantEnd = operandEnd(expression, true);
+            identifierEnd = operandEnd(expression, false);
+        }
+
+        /**
+         * Конец первого после середины операнда нужного вида (для идентификатора — конец имени)
+         */
+        private static int operandEnd(String text, boolean constant) {
+            for (int i = text.length() / 2; i < text.length(); i++) {
+                char c = text.charAt(i);
+                boolean start = i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)) && text.charAt(i - 1) != '.';
+                if (start && (constant ? Character.isDigit(c) : Character.isLetter(c))) {
+                    int end = i + 1;
+                    while (end < text.length() && (Character.isLetterOrDigit(text.charAt(end)) || text.charAt(end) == '.')) {
+                        end++;
+                    }
+                    return end;
+                }
+            }
+            throw new IllegalStateException("Во второй половине выражения нет нужного операнда");
+        }
+    }
+
+    /**
+     * Константа меняется на константу: дерево переписывается на месте
+     */
+    @Benchmark
+    public VariableType editConstant(DocumentState state) {
+        state.document.edit(state.constantEnd, 0, "1");
+        state.document.edit(state.constantEnd, 1, "");
+        return state.document.getResultType();
+    }
+
+    /**
+     * Новая операция: заново разбирается содержимое ближайших скобок
+     */
+    @Benchmark
+    public VariableType insertOperation(DocumentState state) {
+        state.document.edit(state.constantEnd, 0, " * 2");
+        state.document.edit(state.constantEnd, 4, "");
+        return state.document.getResultType();
+    }
+
+    /**
+     * Новое имя: таблица символов перенумеровывается проходом по идентификаторам
+     */
+    @Benchmark
+    public VariableType renameIdentifier(DocumentState state) {
+        state.document.edit(state.identifierEnd, 0, "z");
+        state.document.edit(state.identifierEnd, 1, "");
+        return state.document.getResultType();
+    }
+
+    /**
+     * Для сравнения: две компиляции нового текста с нуля до дерева
+     */
+    @Benchmark
+    public SyntaxTree compileFromScratch(DocumentState state) {
+        new CompilationUnit(state.expression).getSyntaxTree();
+        return new CompilationUnit(state.expression).getSyntaxTree();
+    }
+}
@@ -0,0 +1,37 @@
+package ru.strakhov.devs.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.strakhov.devs.analyzer.LexicalAnalyzer;
+import ru.strakhov.devs.lexical_object.entity.LexcialObject;
+import ru.strakhov.devs.lexical_object.entity.TokenBuffer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лексический анализ: буфер токенов и объектный список для старого API
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LexerBenchmark {
+
+    @Benchmark
+    public TokenBuffer tokenize(PipelineState state) {
+        // Таблица символов накапливается в анализаторе, поэтому на каждый вызов — новый
+        return new LexicalAnalyzer().tokenize(state.expression);
+    }
+
+    @Benchmark
+    public List<LexcialObject> getTokens(PipelineState state) {
+        return new LexicalAnalyzer().getTokens(state.expression);
+    }
+}
@@ -0,0 +1,35 @@
+package ru.strakhov.devs.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.strakhov.devs.parser.syntax.SyntaxParser;
+import ru.strakhov.devs.parser.syntax.SyntaxTree;
+import ru.strakhov.devs.parser.syntax.SyntaxTreeNode;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Синтаксический анализ готового буфера токенов: дерево-массив и объектное дерево
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Benchmark
+    public SyntaxTree parseTree(PipelineState state) {
+        return new SyntaxParser(state.tokenBuffer).parseTree();
+    }
+
+    @Benchmark
+    public SyntaxTreeNode parseExpression(PipelineState state) {
+        return new SyntaxParser(state.tokenBuffer).parseExpression();
+    }
+}
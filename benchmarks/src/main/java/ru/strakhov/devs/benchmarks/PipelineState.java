@@ -0,0 +1,67 @@
+package ru.strakhov.devs.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.strakhov.devs.analyzer.CompilationUnit;
+import ru.strakhov.devs.analyzer.LexicalAnalyzer;
+import ru.strakhov.devs.analyzer.SemanticAnalyzer;
+import ru.strakhov.devs.lexical_object.entity.TokenBuffer;
+import ru.strakhov.devs.parser.syntax.SyntaxParser;
+import ru.strakhov.devs.parser.syntax.SyntaxTree;
+import ru.strakhov.devs.workload.ExpressionGenerator;
+import ru.strakhov.devs.workload.WorkloadShape;
+
+/**
+ * Входные данные бенчмарков: выражение из {@link ExpressionGenerator} и результаты стадий,
+ * предшествующих измеряемой. Скошенные формы дерева задаются через {@code -p shape=LEFT_SKEWED}.
+ * Размеры до 10 млн токенов задаются через {@code -p tokens=10000000}; по умолчанию
+ * берутся размеры, при которых полный прогон укладывается в разумное время
+ */
+@State(Scope.Benchmark)
+public class PipelineState {
+    @Param({"10", "1000", "100000"})
+    public int tokens;
+
+    @Param({"0", "8"})
+    public int depth;
+
+    @Param({"16", "4096"})
+    public int identifiers;
+
+    @Param({"0.0", "0.5"})
+    public double floatShare;
+
+    @Param("BALANCED")
+    public WorkloadShape shape;
+
+    @Param("42")
+    public long seed;
+
+    public String expression;
+    public LexicalAnalyzer lexicalAnalyzer;
+    public TokenBuffer tokenBuffer;
+    public SyntaxTree syntaxTree;
+    public SyntaxTree analyzedTree;
+    public CompilationUnit unit;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ExpressionGenerator generator = new ExpressionGenerator(seed);
+        generator.setShape(shape);
+        generator.setDepth(depth);
+        generator.setIdentifiers(identifiers);
+        generator.setFloatShare(floatShare);
+        expression = generator.generate(tokens).getExpression();
+        lexicalAnalyzer = new LexicalAnalyzer();
+        tokenBuffer = lexicalAnalyzer.tokenize(expression);
+        syntaxTree = new SyntaxParser(tokenBuffer).parseTree();
+        analyzedTree = new SemanticAnalyzer(lexicalAnalyzer).analyze(syntaxTree);
+
+        unit = new CompilationUnit(lexicalAnalyzer, tokenBuffer);
+        // Деревья единицы строятся заранее, чтобы генераторы измерялись без анализа
+        unit.getOptimizedTree();
+    }
+}
@@ -0,0 +1,34 @@
+package ru.strakhov.devs.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.strakhov.devs.analyzer.SemanticAnalyzer;
+import ru.strakhov.devs.parser.syntax.SyntaxTree;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Семантический анализ (приведение типов и проверка деления на 0) и упрощение дерева
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SemanticBenchmark {
+
+    @Benchmark
+    public SyntaxTree analyze(PipelineState state) {
+        return new SemanticAnalyzer(state.lexicalAnalyzer).analyze(state.syntaxTree);
+    }
+
+    @Benchmark
+    public SyntaxTree optimize(PipelineState state) {
+        return new SemanticAnalyzer(state.lexicalAnalyzer).optimize(state.analyzedTree);
+    }
+}
@@ -0,0 +1,35 @@
+package ru.strakhov.devs.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.strakhov.devs.visualizer.TreeVisualizer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Печать дерева после семантического анализа: потоковая и в строку
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreeVisualizerBenchmark {
+
+    @Benchmark
+    public void printTreeToWriter(PipelineState state) throws IOException {
+        TreeVisualizer.printTree(state.analyzedTree, Writer.nullWriter());
+    }
+
+    @Benchmark
+    public String printTreeToString(PipelineState state) {
+        return TreeVisualizer.printTree(state.analyzedTree);
+    }
+}
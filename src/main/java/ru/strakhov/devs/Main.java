@@ -1,23 +1,84 @@
 package ru.strakhov.devs;
 
 import ru.strakhov.devs.analyzer.LexicalAnalyzer;
+import ru.strakhov.devs.cache.CompilationCache;
+import ru.strakhov.devs.lexical_object.entity.VariableType;
+import ru.strakhov.devs.stats.PipelineStats;
+import ru.strakhov.devs.starter.BatchProcessor;
+import ru.strakhov.devs.starter.CompileServer;
 import ru.strakhov.devs.starter.ExpressionProcessor;
+import ru.strakhov.devs.workload.ExpressionGenerator;
+import ru.strakhov.devs.workload.WorkloadCase;
+import ru.strakhov.devs.workload.WorkloadShape;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class Main {
+    private static final String STATS_FLAG = "--stats";
+    private static final String CACHE_FLAG = "--cache";
+    private static final String CACHE_ENTRIES_FLAG = "--cache-entries";
+    private static final String CACHE_DIR_FLAG = "--cache-dir";
+
     public static void main(String[] args) throws IOException {
-        if (args.length < 2) {
-            System.err.println("Usage: java Main <mode> <input_file> [tokens_file] [symbols_file]");
+        // Флаг --stats можно указать в любом месте: сводка по стадиям выводится в stderr одной строкой JSON
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        PipelineStats stats = arguments.remove(STATS_FLAG) ? new PipelineStats() : PipelineStats.DISABLED;
+        CompilationCache cache = createCache(arguments);
+        args = arguments.toArray(new String[0]);
+
+        if (args.length < 2 && !(args.length == 1 && args[0].equalsIgnoreCase("serve"))) {
+            System.err.println("Usage: java Main <mode> <input_file> [tokens_file] [symbols_file] [--stats] [cache]");
+            System.err.println("       java Main batch <mode> <expressions_file> [output_dir] [--threads N] [--stats] [cache]");
+            System.err.println("       java Main serve [socket_path] [--stats] [cache]");
+            System.err.println("       java Main workload <output_file> <tokens> [--count N] [--shape balanced|left|right]");
+            System.err.println("                          [--depth N] [--identifiers N] [--float-share X] [--repeat-share X] [--seed N]");
+            System.err.println("Cache: --cache | --cache-entries N | --cache-dir DIR (results of repeated expressions are reused)");
             System.exit(1);
         }
 
         String mode = args[0].toLowerCase();
+        if (mode.equals("serve")) {
+            runServer(args, stats, cache);
+            return;
+        }
+        if (mode.equals("batch")) {
+            runBatch(args, stats, cache);
+            return;
+        }
+        if (mode.equals("workload")) {
+            runWorkload(args);
+            return;
+        }
         String inputFile = args[1];
         String tokensFile = args.length > 2 ? args[2] : null;
         String symbolsFile = args.length > 3 ? args[3] : null;
 
         ExpressionProcessor expressionProcessor = new ExpressionProcessor();
+        expressionProcessor.setStats(stats);
+        expressionProcessor.setCache(cache);
+        try {
+            runMode(expressionProcessor, mode, inputFile, tokensFile, symbolsFile);
+        } finally {
+            printStats(stats, cache);
+        }
+    }
+
+    private static void runMode(ExpressionProcessor expressionProcessor, String mode, String inputFile,
+                                String tokensFile, String symbolsFile) throws IOException {
         if (mode.equals("lex")) {
             if (tokensFile == null || symbolsFile == null) {
                 System.err.println("For LEX mode, tokens_file and symbols_file are required");
@@ -37,9 +98,161 @@ public class Main {
         } else if (mode.equals("gen2")) {
             expressionProcessor.setCurrentMode("gen2");
             expressionProcessor.start(inputFile, tokensFile, symbolsFile);
+        } else if (mode.equals("all")) {
+            expressionProcessor.setCurrentMode("all");
+            expressionProcessor.start(inputFile, tokensFile, symbolsFile);
         } else {
-            System.err.println("Invalid mode. Use LEX, SYN, SEM, GEN1, or GEN2:)");
+            System.err.println("Invalid mode. Use LEX, SYN, SEM, GEN1, GEN2, or ALL:)");
+            System.exit(1);
+        }
+    }
+
+    private static void printStats(PipelineStats stats, CompilationCache cache) {
+        if (stats.isEnabled()) {
+            System.err.println(stats.toJson());
+            if (cache != null) {
+                System.err.println(cache.toJson());
+            }
+        }
+    }
+
+    /**
+     * Флаги кэша можно указать в любом месте: --cache включает кэш в памяти,
+     * --cache-entries N задает его размер, --cache-dir DIR добавляет уровень на диске
+     * (результаты сохраняются между запусками). Без флагов кэш выключен
+     */
+    private static CompilationCache createCache(List<String> arguments) throws IOException {
+        boolean enabled = arguments.remove(CACHE_FLAG);
+        int entries = CompilationCache.DEFAULT_MAX_ENTRIES;
+        String directory = null;
+        for (int i = 0; i + 1 < arguments.size(); ) {
+            if (arguments.get(i).equals(CACHE_ENTRIES_FLAG)) {
+                entries = Integer.parseInt(arguments.remove(i + 1));
+                arguments.remove(i);
+                enabled = true;
+            } else if (arguments.get(i).equals(CACHE_DIR_FLAG)) {
+                directory = arguments.remove(i + 1);
+                arguments.remove(i);
+                enabled = true;
+            } else {
+                i++;
+            }
+        }
+        if (!enabled) {
+            return null;
+        }
+        CompilationCache cache = new CompilationCache(entries, CompilationCache.DEFAULT_MAX_BYTES);
+        if (directory != null) {
+            cache.setDirectory(Paths.get(directory));
+        }
+        return cache;
+    }
+
+    private static void runBatch(String[] args, PipelineStats stats, CompilationCache cache) throws IOException {
+        // Флаг --threads N можно указать в любом месте после batch
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> positional = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        if (positional.size() < 2) {
+            System.err.println("For BATCH mode, mode and expressions_file are required");
+            System.exit(1);
+        }
+        String batchMode = positional.get(0).toLowerCase();
+        if (!Set.of("lex", "syn", "sem", "gen1", "gen2", "all").contains(batchMode)) {
+            System.err.println("Invalid batch mode. Use LEX, SYN, SEM, GEN1, GEN2, or ALL:)");
+            System.exit(1);
+        }
+        String outputDirectory = positional.size() > 2 ? Paths.get(positional.get(2)).toAbsolutePath().toString() : null;
+
+        BatchProcessor batchProcessor = new BatchProcessor(batchMode, threads);
+        batchProcessor.setStats(stats);
+        batchProcessor.setCache(cache);
+        Writer output = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        batchProcessor.run(positional.get(1), outputDirectory, output);
+        System.err.printf("Processed %d expressions, failed: %d%n",
+                batchProcessor.getProcessedCount(), batchProcessor.getFailedCount());
+        printStats(stats, cache);
+        if (batchProcessor.getFailedCount() > 0) {
             System.exit(1);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Пишет сгенерированные выражения в файл (при --count больше 1 — по одному в строке, как для batch),
+     * а в стандартный вывод — номер, число токенов и тип результата каждого выражения
+     */
+    private static void runWorkload(String[] args) throws IOException {
+        List<String> positional = new ArrayList<>();
+        int count = 1;
+        long seed = 1;
+        WorkloadShape shape = WorkloadShape.BALANCED;
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--") && i + 1 < args.length) {
+                options.put(args[i], args[++i]);
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        if (positional.size() < 2) {
+            System.err.println("For WORKLOAD mode, output_file and tokens are required");
+            System.exit(1);
+        }
+        long tokens = Long.parseLong(positional.get(1));
+        if (options.containsKey("--count")) count = Integer.parseInt(options.get("--count"));
+        if (options.containsKey("--seed")) seed = Long.parseLong(options.get("--seed"));
+        if (options.containsKey("--shape")) {
+            switch (options.get("--shape").toLowerCase()) {
+                case "balanced": shape = WorkloadShape.BALANCED; break;
+                case "left": shape = WorkloadShape.LEFT_SKEWED; break;
+                case "right": shape = WorkloadShape.RIGHT_SKEWED; break;
+                default:
+                    System.err.println("Invalid shape. Use BALANCED, LEFT or RIGHT");
+                    System.exit(1);
+            }
+        }
+
+        ExpressionGenerator generator = new ExpressionGenerator(seed);
+        generator.setShape(shape);
+        if (options.containsKey("--depth")) generator.setDepth(Integer.parseInt(options.get("--depth")));
+        if (options.containsKey("--identifiers")) generator.setIdentifiers(Integer.parseInt(options.get("--identifiers")));
+        if (options.containsKey("--float-share")) generator.setFloatShare(Double.parseDouble(options.get("--float-share")));
+        if (options.containsKey("--repeat-share")) generator.setRepeatShare(Double.parseDouble(options.get("--repeat-share")));
+
+        try (Writer output = Files.newBufferedWriter(Paths.get(positional.get(0)), StandardCharsets.UTF_8)) {
+            for (int i = 1; i <= count; i++) {
+                WorkloadCase workloadCase = generator.generate(tokens, output);
+                if (count > 1) {
+                    output.write('\n');
+                }
+                System.out.printf("%d\t%d\t%s%n", i, workloadCase.getTokenCount(),
+                        workloadCase.getResultType() == VariableType.FLOAT ? "float" : "integer");
+            }
+        }
+    }
+
+    private static void runServer(String[] args, PipelineStats stats, CompilationCache cache) throws IOException {
+        CompileServer compileServer = new CompileServer();
+        compileServer.warmUp();
+        compileServer.setStats(stats);
+        // Кэш подключается после прогрева, чтобы в нем не осталось выражение прогрева
+        compileServer.setCache(cache);
+        try {
+            if (args.length > 1) {
+                compileServer.serveUnixSocket(Paths.get(args[1]));
+            } else {
+                BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+                Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+                compileServer.serve(in, out);
+            }
+        } finally {
+            printStats(stats, cache);
+        }
+    }
+}
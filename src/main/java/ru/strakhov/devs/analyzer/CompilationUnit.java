@@ -0,0 +1,122 @@
+package ru.strakhov.devs.analyzer;
+
+import ru.strakhov.devs.lexical_object.entity.LexcialObject;
+import ru.strakhov.devs.lexical_object.entity.TokenBuffer;
+import ru.strakhov.devs.parser.syntax.SyntaxParser;
+import ru.strakhov.devs.parser.syntax.SyntaxTree;
+import ru.strakhov.devs.stats.PipelineStats;
+import ru.strakhov.devs.stats.Stage;
+import ru.strakhov.devs.stats.StageTimer;
+
+import java.util.List;
+
+/**
+ * Одно выражение и все его промежуточные представления.
+ * Каждая стадия (лексический анализ, разбор, семантический анализ, упрощение)
+ * выполняется один раз при первом обращении, а результат переиспользуется
+ * любым числом генераторов. Генераторы деревья не изменяют.
+ */
+public class CompilationUnit {
+    private final LexicalAnalyzer lexicalAnalyzer;
+    private final CharSequence source;
+    private TokenBuffer tokens;
+    private SyntaxTree syntaxTree;
+    private SyntaxTree analyzedTree;
+    private SyntaxTree optimizedTree;
+    private PipelineStats stats = PipelineStats.DISABLED;
+
+    public CompilationUnit(CharSequence source) {
+        this.lexicalAnalyzer = new LexicalAnalyzer();
+        this.source = source;
+    }
+
+    /**
+     * Для уже разобранных на токены выражений (например, прочитанных потоково из файла)
+     */
+    public CompilationUnit(LexicalAnalyzer lexicalAnalyzer, TokenBuffer tokens) {
+        this.lexicalAnalyzer = lexicalAnalyzer;
+        this.source = null;
+        this.tokens = tokens;
+    }
+
+    public CompilationUnit(LexicalAnalyzer lexicalAnalyzer, List<LexcialObject> tokens) {
+        this(lexicalAnalyzer, TokenBuffer.of(tokens));
+    }
+
+    /**
+     * Для уже разобранных выражений (например, документа {@link IncrementalCompiler});
+     * дерево должно быть построено по этим токенам
+     */
+    public CompilationUnit(LexicalAnalyzer lexicalAnalyzer, TokenBuffer tokens, SyntaxTree syntaxTree) {
+        this(lexicalAnalyzer, tokens);
+        this.syntaxTree = syntaxTree;
+    }
+
+    /**
+     * Счетчики, в которые пишутся замеры стадий, выполняемых единицей
+     */
+    public void setStats(PipelineStats stats) {
+        this.stats = stats;
+    }
+
+    public LexicalAnalyzer getLexicalAnalyzer() {
+        return lexicalAnalyzer;
+    }
+
+    public TokenBuffer getTokenBuffer() {
+        if (tokens == null) {
+            StageTimer timer = stats.start(Stage.LEX);
+            tokens = lexicalAnalyzer.tokenize(source);
+            timer.stop(tokens.size());
+        }
+        return tokens;
+    }
+
+    /**
+     * Токены в виде списка объектов; создаются заново при каждом вызове
+     */
+    public List<LexcialObject> getTokens() {
+        return this.getTokenBuffer().toList();
+    }
+
+    /**
+     * Синтаксическое дерево; весь ввод должен быть разобран
+     */
+    public SyntaxTree getSyntaxTree() {
+        if (syntaxTree == null) {
+            SyntaxParser parser = new SyntaxParser(this.getTokenBuffer());
+            StageTimer timer = stats.start(Stage.PARSE);
+            SyntaxTree tree = parser.parseTree();
+            parser.checkEnd();
+            timer.stop(tree.size());
+            syntaxTree = tree;
+        }
+        return syntaxTree;
+    }
+
+    /**
+     * Дерево после семантического анализа (с узлами Int2Float)
+     */
+    public SyntaxTree getAnalyzedTree() {
+        if (analyzedTree == null) {
+            SyntaxTree tree = this.getSyntaxTree();
+            StageTimer timer = stats.start(Stage.SEMANTIC);
+            analyzedTree = new SemanticAnalyzer(lexicalAnalyzer).analyze(tree);
+            timer.stop(analyzedTree.size());
+        }
+        return analyzedTree;
+    }
+
+    /**
+     * Упрощенное дерево, по которому генерируется код
+     */
+    public SyntaxTree getOptimizedTree() {
+        if (optimizedTree == null) {
+            SyntaxTree tree = this.getAnalyzedTree();
+            StageTimer timer = stats.start(Stage.OPTIMIZE);
+            optimizedTree = new SemanticAnalyzer(lexicalAnalyzer).optimize(tree);
+            timer.stop(optimizedTree.size());
+        }
+        return optimizedTree;
+    }
+}
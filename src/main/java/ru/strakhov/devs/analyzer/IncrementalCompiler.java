@@ -0,0 +1,590 @@
+package ru.strakhov.devs.analyzer;
+
+import ru.strakhov.devs.exception.SyntaxException;
+import ru.strakhov.devs.lexical_object.entity.SymbolTable;
+import ru.strakhov.devs.lexical_object.entity.TokenBuffer;
+import ru.strakhov.devs.lexical_object.entity.TokenKind;
+import ru.strakhov.devs.lexical_object.entity.VariableType;
+import ru.strakhov.devs.parser.syntax.NodeKind;
+import ru.strakhov.devs.parser.syntax.SyntaxParser;
+import ru.strakhov.devs.parser.syntax.SyntaxTree;
+import ru.strakhov.devs.stats.PipelineStats;
+import ru.strakhov.devs.stats.Stage;
+import ru.strakhov.devs.stats.StageTimer;
+
+import java.util.Arrays;
+
+/**
+ * Выражение, которое меняется правками текста (например, в редакторе формул), вместе с его
+ * токенами и синтаксическим деревом.
+ * <p>
+ * Операторы — всегда отдельные односимвольные токены, поэтому после правки заново читается
+ * только окно между ближайшими к ней операторами. Если виды токенов окна не изменились
+ * (операнд на операнд, + на -, * на /), узлы дерева переписываются на месте; иначе заново
+ * разбирается только содержимое ближайших к окну скобок, а остальные поддеревья остаются.
+ * Типы пересчитываются от измененных узлов вверх до первого предка, тип которого не изменился.
+ * <p>
+ * Результат совпадает с компиляцией нового текста с нуля, включая номера в таблице символов.
+ * Если правка меняет идентификаторы окна, номера и типы переназначаются одним проходом по
+ * идентификаторам буфера, без повторного чтения текста. Токены, дерево и единица компиляции
+ * действительны до следующей правки.
+ */
+public class IncrementalCompiler {
+    private final LexicalAnalyzer lexicalAnalyzer = new LexicalAnalyzer();
+    private final SymbolTable symbols = lexicalAnalyzer.getSymbols();
+    private final StringBuilder source;
+    private TokenBuffer tokens;     // null, если текст еще не прочитан или содержит лексическую ошибку
+    private SyntaxTree syntaxTree;  // null, если токены еще не разобраны или содержат синтаксическую ошибку
+    private int[] tokenNodes = new int[0]; // Узел каждого токена; у скобок NONE
+    private int[] parents = new int[0];
+    private PipelineStats stats = PipelineStats.DISABLED;
+    private int relexedTokens;
+    private int reparsedNodes;
+
+    public IncrementalCompiler(CharSequence source) {
+        this.source = new StringBuilder(source);
+    }
+
+    /**
+     * Счетчики, в которые пишутся замеры лексического анализа и разбора
+     */
+    public void setStats(PipelineStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Заменяет removedLength символов с позиции offset текстом insertedText и обновляет токены и дерево.
+     * Текст меняется, даже если новое выражение содержит ошибку: тогда бросается то же исключение,
+     * что и при компиляции с нуля, а следующая правка заново читает то, что не удалось построить
+     */
+    public void edit(int offset, int removedLength, CharSequence insertedText) {
+        if (offset < 0 || removedLength < 0 || offset > source.length() - removedLength) {
+            throw new IndexOutOfBoundsException("Правка [" + offset + ", " + (offset + removedLength)
+                    + ") вне текста длины " + source.length());
+        }
+        relexedTokens = 0;
+        reparsedNodes = 0;
+        if (tokens == null) {
+            source.replace(offset, offset + removedLength, insertedText.toString());
+            this.getSyntaxTree();
+            return;
+        }
+
+        int delta = insertedText.length() - removedLength;
+        int from = this.windowStart(offset);
+        int to = this.windowEnd(offset + removedLength);
+        int textStart = from > 0 ? tokens.position(from - 1) + 1 : 0;
+        int tailPosition = to < tokens.size() ? tokens.position(to) : source.length();
+        source.replace(offset, offset + removedLength, insertedText.toString());
+
+        StageTimer timer = stats.start(Stage.LEX);
+        TokenBuffer window;
+        try {
+            // Отдельный анализатор: таблица символов документа меняется только после сверки с окном
+            window = new LexicalAnalyzer().tokenize(source, textStart, tailPosition + delta);
+        } catch (RuntimeException e) {
+            tokens = null;
+            syntaxTree = null;
+            throw e;
+        }
+        timer.stop(window.size());
+        relexedTokens = window.size();
+
+        // Что разбирать заново, решается по старым токенам и старому дереву
+        boolean sameShape = this.hasSameShape(from, to, window);
+        int open = SyntaxTree.NONE;
+        int close = SyntaxTree.NONE;
+        if (syntaxTree != null && !sameShape && this.isBalanced(from, to)) {
+            open = this.enclosingOpen(from);
+            close = this.enclosingClose(to);
+        }
+        int first = SyntaxTree.NONE;
+        int root = SyntaxTree.NONE;
+        if (open != SyntaxTree.NONE && close < tokens.size()) {
+            first = tokenNodes[this.firstOperand(open)];
+            root = first + this.countNodes(open, close) - 1;
+        }
+
+        boolean sameIdentifiers = this.hasSameIdentifiers(from, to, window);
+        if (sameIdentifiers) {
+            this.bindSameIdentifiers(from, to, window, tailPosition, delta);
+        } else {
+            this.bindNewIdentifiers(window);
+        }
+        int tokenDelta = window.size() - (to - from);
+        tokens.replace(from, to, window, delta);
+        boolean typesChanged = !sameIdentifiers && this.rebindIdentifiers(from, from + window.size());
+
+        timer = stats.start(Stage.PARSE);
+        if (syntaxTree == null) {
+            this.parse();
+        } else if (sameShape) {
+            this.updateNodes(from, window.size());
+        } else if (first != SyntaxTree.NONE) {
+            this.reparseGroup(open, close + tokenDelta, first, root, to, tokenDelta);
+        } else {
+            this.parse();
+        }
+        if (typesChanged) {
+            // Аннотация в окне поменяла тип идентификатора и за его пределами
+            this.retypeAll();
+        }
+        timer.stop(reparsedNodes);
+    }
+
+    public String getSource() {
+        return source.toString();
+    }
+
+    public LexicalAnalyzer getLexicalAnalyzer() {
+        return lexicalAnalyzer;
+    }
+
+    public TokenBuffer getTokenBuffer() {
+        if (tokens == null) {
+            syntaxTree = null;
+            symbols.clear();
+            StageTimer timer = stats.start(Stage.LEX);
+            tokens = lexicalAnalyzer.tokenize(source);
+            timer.stop(tokens.size());
+            relexedTokens = tokens.size();
+        }
+        return tokens;
+    }
+
+    /**
+     * Синтаксическое дерево; весь текст должен быть разобран
+     */
+    public SyntaxTree getSyntaxTree() {
+        if (syntaxTree == null) {
+            this.getTokenBuffer();
+            StageTimer timer = stats.start(Stage.PARSE);
+            this.parse();
+            timer.stop(reparsedNodes);
+        }
+        return syntaxTree;
+    }
+
+    public VariableType getResultType() {
+        SyntaxTree tree = this.getSyntaxTree();
+        return tree.type(tree.root());
+    }
+
+    /**
+     * Единица компиляции над текущими токенами и деревом: семантический анализ и генерация кода
+     * выполняются как обычно. Действительна до следующей правки
+     */
+    public CompilationUnit getCompilationUnit() {
+        SyntaxTree tree = this.getSyntaxTree();
+        return new CompilationUnit(lexicalAnalyzer, tokens, tree);
+    }
+
+    /**
+     * Число токенов, прочитанных заново при последней правке
+     */
+    public int getRelexedTokens() {
+        return relexedTokens;
+    }
+
+    /**
+     * Число узлов, построенных или переписанных заново при последней правке
+     */
+    public int getReparsedNodes() {
+        return reparsedNodes;
+    }
+
+    /**
+     * Первый токен окна: следующий за последним оператором, который начинается до offset
+     */
+    private int windowStart(int offset) {
+        int index = this.firstTokenAt(offset) - 1;
+        while (index >= 0 && !isOperator(tokens.kind(index))) {
+            index--;
+        }
+        return index + 1;
+    }
+
+    /**
+     * Конец окна (не включая): первый оператор, начинающийся не раньше end
+     */
+    private int windowEnd(int end) {
+        int index = this.firstTokenAt(end);
+        while (index < tokens.size() && !isOperator(tokens.kind(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Двоичный поиск по возрастающим позициям
+     * @return индекс первого токена с позицией не меньше position
+     */
+    private int firstTokenAt(int position) {
+        int low = 0;
+        int high = tokens.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (tokens.position(middle) < position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Дерево сохраняет форму, если токены окна заменены токенами того же места в грамматике:
+     * операнд операндом, бинарная операция — операцией того же приоритета, остальное — тем же токеном
+     */
+    private boolean hasSameShape(int from, int to, TokenBuffer window) {
+        if (syntaxTree == null || window.size() != to - from) {
+            return false;
+        }
+        for (int i = 0; i < window.size(); i++) {
+            TokenKind before = tokens.kind(from + i);
+            TokenKind after = window.kind(i);
+            if (isOperand(before) && isOperand(after) || before == after) {
+                continue;
+            }
+            boolean additive = isAdditive(before) && isAdditive(after)
+                    && syntaxTree.kind(tokenNodes[from + i]) != NodeKind.NEGATE;
+            boolean multiplicative = isMultiplicative(before) && isMultiplicative(after);
+            if (!additive && !multiplicative) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Переписывает на месте узлы токенов окна, когда форма дерева не изменилась
+     */
+    private void updateNodes(int from, int count) {
+        for (int index = from; index < from + count; index++) {
+            int node = tokenNodes[index];
+            if (node == SyntaxTree.NONE) continue;
+            if (syntaxTree.isLeaf(node)) {
+                syntaxTree.setLeaf(node, index);
+                this.retypeAncestors(node);
+                reparsedNodes++;
+            } else if (syntaxTree.kind(node) != NodeKind.NEGATE) {
+                NodeKind kind = NodeKind.binary(tokens.kind(index));
+                if (syntaxTree.kind(node) != kind) {
+                    syntaxTree.setKind(node, kind);
+                    reparsedNodes++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Заново разбирает содержимое скобок open..close (индексы в новом буфере) и подставляет
+     * его вместо старого поддерева [first, root]. Если содержимое отдельно не разбирается
+     * (например, правка перенесла скобку), разбирается все выражение — ради той же ошибки, что и с нуля
+     */
+    private void reparseGroup(int open, int close, int first, int root, int tokenFrom, int tokenDelta) {
+        SyntaxParser parser = new SyntaxParser(tokens, open + 1, close);
+        SyntaxTree content;
+        try {
+            content = parser.parseTree();
+            parser.checkEnd();
+        } catch (SyntaxException e) {
+            this.parse();
+            return;
+        }
+        int oldTokenCount = tokens.size() - tokenDelta;
+        int oldNodeCount = syntaxTree.size();
+        int newRoot = syntaxTree.replace(first, root, content, tokenFrom, tokenDelta);
+        reparsedNodes = content.size();
+        this.relink(open, close, first, root, newRoot, tokenFrom, tokenDelta, oldTokenCount, oldNodeCount);
+        this.retypeAncestors(newRoot);
+    }
+
+    /**
+     * Обновляет обратные ссылки после замены поддерева [first, root] на [first, newRoot]:
+     * хвосты массивов сдвигаются, ссылки на узлы правее поддерева смещаются на разницу в числе узлов,
+     * а заново заполняются только ссылки содержимого скобок open..close (индексы в новом буфере)
+     */
+    private void relink(int open, int close, int first, int root, int newRoot,
+                        int tokenFrom, int tokenDelta, int oldTokenCount, int oldNodeCount) {
+        int nodeDelta = newRoot - root;
+        int parent = parents[root];
+        tokenNodes = shiftTail(tokenNodes, tokenFrom, oldTokenCount, tokenDelta);
+        parents = shiftTail(parents, root + 1, oldNodeCount, nodeDelta);
+
+        // Содержимое скобок и нового поддерева заполняется ниже
+        shiftRefs(tokenNodes, 0, open + 1, root, nodeDelta);
+        shiftRefs(tokenNodes, close, tokens.size(), root, nodeDelta);
+        Arrays.fill(tokenNodes, open + 1, close, SyntaxTree.NONE);
+        shiftRefs(parents, 0, first, root, nodeDelta);
+        shiftRefs(parents, newRoot + 1, syntaxTree.size(), root, nodeDelta);
+        parents[newRoot] = parent != SyntaxTree.NONE ? parent + nodeDelta : SyntaxTree.NONE;
+        for (int node = first; node <= newRoot; node++) {
+            tokenNodes[syntaxTree.token(node)] = node;
+            int left = syntaxTree.left(node);
+            if (left == SyntaxTree.NONE) continue;
+            parents[left] = node;
+            int right = syntaxTree.right(node);
+            if (right != SyntaxTree.NONE) {
+                parents[right] = node;
+            }
+        }
+    }
+
+    /**
+     * Смещает на delta ссылки из [from, to), указывающие правее threshold. Цикл без ветвлений,
+     * чтобы JIT мог его векторизовать
+     */
+    private static void shiftRefs(int[] array, int from, int to, int threshold, int delta) {
+        for (int index = from; index < to; index++) {
+            int value = array[index];
+            array[index] = value > threshold ? value + delta : value;
+        }
+    }
+
+    /**
+     * Сдвигает элементы [from, end) массива на delta, при необходимости увеличивая массив
+     */
+    private static int[] shiftTail(int[] array, int from, int end, int delta) {
+        if (end + delta > array.length) {
+            array = Arrays.copyOf(array, end + delta + ((end + delta) >> 1));
+        }
+        System.arraycopy(array, from, array, from + delta, end - from);
+        return array;
+    }
+
+    private void parse() {
+        syntaxTree = null;
+        SyntaxParser parser = new SyntaxParser(tokens);
+        SyntaxTree tree = parser.parseTree();
+        parser.checkEnd();
+        syntaxTree = tree;
+        reparsedNodes = tree.size();
+        this.index();
+    }
+
+    /**
+     * Строит обратные ссылки: токен -> узел и узел -> родитель
+     */
+    private void index() {
+        int nodeCount = syntaxTree.size();
+        if (parents.length < nodeCount) {
+            parents = new int[nodeCount + (nodeCount >> 1)];
+        }
+        if (tokenNodes.length < tokens.size()) {
+            tokenNodes = new int[tokens.size() + (tokens.size() >> 1)];
+        }
+        Arrays.fill(tokenNodes, 0, tokens.size(), SyntaxTree.NONE);
+        if (nodeCount > 0) {
+            parents[nodeCount - 1] = SyntaxTree.NONE;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            tokenNodes[syntaxTree.token(node)] = node;
+            int left = syntaxTree.left(node);
+            if (left == SyntaxTree.NONE) continue;
+            parents[left] = node;
+            int right = syntaxTree.right(node);
+            if (right != SyntaxTree.NONE) {
+                parents[right] = node;
+            }
+        }
+    }
+
+    /**
+     * Пересчитывает типы предков node, пока тип очередного предка меняется
+     */
+    private void retypeAncestors(int node) {
+        for (int parent = parents[node]; parent != SyntaxTree.NONE && syntaxTree.updateType(parent);
+             parent = parents[parent]) {
+        }
+    }
+
+    private void retypeAll() {
+        for (int node = 0; node < syntaxTree.size(); node++) {
+            if (syntaxTree.isLeaf(node)) {
+                syntaxTree.setLeaf(node, syntaxTree.token(node));
+            } else {
+                syntaxTree.updateType(node);
+            }
+        }
+    }
+
+    private boolean isBalanced(int from, int to) {
+        int depth = 0;
+        for (int index = from; index < to && depth >= 0; index++) {
+            TokenKind kind = tokens.kind(index);
+            if (kind == TokenKind.OPEN_BRACKET) depth++;
+            if (kind == TokenKind.CLOSE_BRACKET) depth--;
+        }
+        return depth == 0;
+    }
+
+    /**
+     * @return открывающая скобка, внутри которой лежит окно, или NONE на верхнем уровне
+     */
+    private int enclosingOpen(int from) {
+        int depth = 0;
+        for (int index = from - 1; index >= 0; index--) {
+            TokenKind kind = tokens.kind(index);
+            if (kind == TokenKind.CLOSE_BRACKET) {
+                depth++;
+            } else if (kind == TokenKind.OPEN_BRACKET) {
+                if (depth == 0) return index;
+                depth--;
+            }
+        }
+        return SyntaxTree.NONE;
+    }
+
+    /**
+     * @return закрывающая скобка после окна или размер буфера на верхнем уровне
+     */
+    private int enclosingClose(int to) {
+        int depth = 0;
+        for (int index = to; index < tokens.size(); index++) {
+            TokenKind kind = tokens.kind(index);
+            if (kind == TokenKind.OPEN_BRACKET) {
+                depth++;
+            } else if (kind == TokenKind.CLOSE_BRACKET) {
+                if (depth == 0) return index;
+                depth--;
+            }
+        }
+        return tokens.size();
+    }
+
+    /**
+     * Первый операнд в скобках: с его листа начинается поддерево содержимого
+     */
+    private int firstOperand(int open) {
+        int index = open + 1;
+        while (!isOperand(tokens.kind(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Узлов в поддереве содержимого скобок столько же, сколько в них токенов, кроме скобок
+     */
+    private int countNodes(int open, int close) {
+        int count = 0;
+        for (int index = open + 1; index < close; index++) {
+            TokenKind kind = tokens.kind(index);
+            if (kind != TokenKind.OPEN_BRACKET && kind != TokenKind.CLOSE_BRACKET) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Совпадают ли идентификаторы окна со старыми: имена, аннотации и их порядок.
+     * Тогда номера и типы всех идентификаторов остаются прежними
+     */
+    private boolean hasSameIdentifiers(int from, int to, TokenBuffer window) {
+        int index = from;
+        int windowIndex = 0;
+        while (true) {
+            index = nextIdentifier(tokens, index, to);
+            windowIndex = nextIdentifier(window, windowIndex, window.size());
+            if (index == to || windowIndex == window.size()) {
+                return index == to && windowIndex == window.size();
+            }
+            if (tokens.isAnnotated(index) != window.isAnnotated(windowIndex)
+                    || window.isAnnotated(windowIndex) && tokens.variableType(index) != window.variableType(windowIndex)
+                    || symbols.find(window.text(windowIndex)) != tokens.symbolId(index)) {
+                return false;
+            }
+            index++;
+            windowIndex++;
+        }
+    }
+
+    /**
+     * Переносит в окно номера и типы старых идентификаторов; в таблице сдвигаются только позиции
+     */
+    private void bindSameIdentifiers(int from, int to, TokenBuffer window, int tailPosition, int delta) {
+        if (delta != 0) {
+            symbols.shiftPositions(tailPosition, delta);
+        }
+        int index = nextIdentifier(tokens, from, to);
+        int windowIndex = nextIdentifier(window, 0, window.size());
+        while (index < to) {
+            int id = tokens.symbolId(index);
+            if (symbols.firstPosition(id) == tokens.position(index)) {
+                symbols.setFirstPosition(id, window.position(windowIndex));
+            }
+            window.setIdentifier(windowIndex, id, tokens.variableType(index));
+            index = nextIdentifier(tokens, index + 1, to);
+            windowIndex = nextIdentifier(window, windowIndex + 1, window.size());
+        }
+    }
+
+    /**
+     * Переводит идентификаторы окна в номера таблицы документа, добавляя новые имена;
+     * окончательные номера и типы назначает {@link #rebindIdentifiers}
+     */
+    private void bindNewIdentifiers(TokenBuffer window) {
+        for (int index = 0; index < window.size(); index++) {
+            if (window.kind(index) != TokenKind.IDENTIFIER) continue;
+            String name = window.text(index);
+            int id = symbols.find(name);
+            if (id == SymbolTable.NOT_FOUND) {
+                id = symbols.add(name, window.position(index), window.variableType(index));
+            }
+            window.setIdentifier(index, id, window.variableType(index));
+        }
+    }
+
+    /**
+     * Заново нумерует символы в порядке первого появления и выводит типы идентификаторов так же,
+     * как лексический анализ: аннотация меняет тип переменной для нее и всех следующих вхождений
+     * @return true, если изменился тип хотя бы одного идентификатора вне окна [from, to)
+     */
+    private boolean rebindIdentifiers(int from, int to) {
+        SymbolTable previous = symbols.snapshot();
+        symbols.clear();
+        int[] mapped = new int[previous.size() + 1];
+        boolean changed = false;
+        for (int index = 0; index < tokens.size(); index++) {
+            if (tokens.kind(index) != TokenKind.IDENTIFIER) continue;
+            int previousId = tokens.symbolId(index);
+            int id = mapped[previousId];
+            boolean annotated = tokens.isAnnotated(index);
+            if (id == SymbolTable.NOT_FOUND) {
+                id = symbols.add(previous.name(previousId), tokens.position(index),
+                        annotated ? tokens.variableType(index) : VariableType.INTEGER);
+                mapped[previousId] = id;
+            } else if (annotated) {
+                symbols.setType(id, tokens.variableType(index));
+            }
+            VariableType type = symbols.type(id);
+            changed |= (index < from || index >= to) && type != tokens.variableType(index);
+            tokens.setIdentifier(index, id, type);
+        }
+        return changed;
+    }
+
+    private static int nextIdentifier(TokenBuffer buffer, int index, int end) {
+        while (index < end && buffer.kind(index) != TokenKind.IDENTIFIER) {
+            index++;
+        }
+        return index;
+    }
+
+    private static boolean isOperand(TokenKind kind) {
+        return kind == TokenKind.IDENTIFIER || kind == TokenKind.NUMBER;
+    }
+
+    private static boolean isOperator(TokenKind kind) {
+        return kind != TokenKind.IDENTIFIER && kind != TokenKind.NUMBER && kind != TokenKind.UNKNOWN;
+    }
+
+    private static boolean isAdditive(TokenKind kind) {
+        return kind == TokenKind.PLUS || kind == TokenKind.MINUS;
+    }
+
+    private static boolean isMultiplicative(TokenKind kind) {
+        return kind == TokenKind.MULTIPLY || kind == TokenKind.DIVIDE;
+    }
+}
@@ -1,154 +1,322 @@
 package ru.strakhov.devs.analyzer;
 
 import ru.strakhov.devs.parser.syntax.SyntaxTreeNode;
-import ru.strakhov.devs.lexical_object.type.IdentifierType;
 import ru.strakhov.devs.parser.syntax.SyntaxParser;
+import ru.strakhov.devs.utils.TypeDetector;
 import ru.strakhov.devs.validator.TokenValidator;
 import ru.strakhov.devs.lexical_object.entity.LexcialObject;
+import ru.strakhov.devs.lexical_object.entity.SymbolTable;
+import ru.strakhov.devs.lexical_object.entity.TokenBuffer;
+import ru.strakhov.devs.lexical_object.entity.TokenKind;
 import ru.strakhov.devs.lexical_object.entity.VariableType;
-import ru.strakhov.devs.factory.LexicalObjectsFactory;
 import ru.strakhov.devs.manager.IOFileManager;
 import ru.strakhov.devs.visualizer.TreeVisualizer;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 public class LexicalAnalyzer {
-    private static final Set<Character> OPERATORS = Set.of('+', '-', '*', '/', '(', ')');
-    private final Map<String, Integer> symbolTable = new LinkedHashMap<>(); // Таблица символов: имя -> ID
-    private final Map<String, VariableType> variableTypes = new LinkedHashMap<>(); // Типы переменных: имя -> тип
-    private int nextIdentifierId = 1;
-
-    public List<LexcialObject> getTokens(String line) {
-        List<LexcialObject> tokens = new ArrayList<>();
-        int index = 0;
-        int i = 0;
-        line = line.replaceAll("\\s+", "");
-        while (i < line.length()) {
-            if (OPERATORS.contains(line.charAt(i))) {
-                if (index != i) {
-                    this.processToken(line, index, i, tokens);
-                }
-                this.processToken(line, i, i + 1, tokens);
-                index = i + 1;
+    // Состояния конечного автомата, распознающего один токен между операторами
+    private static final int STATE_START = 0;
+    private static final int STATE_ZERO = 1;       // 0
+    private static final int STATE_INTEGER = 2;    // 12
+    private static final int STATE_DOT = 3;        // 12.
+    private static final int STATE_FRACTION = 4;   // 12.5
+    private static final int STATE_IDENTIFIER = 5; // var1
+    private static final int STATE_TYPE_OPEN = 6;  // var1[
+    private static final int STATE_TYPE_CHAR = 7;  // var1[f
+    private static final int STATE_TYPED = 8;      // var1[f]
+    private static final int STATE_OTHER = 9;      // всё остальное
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final TokenKind[] OPERATOR_KINDS = new TokenKind[128];
+    static {
+        for (char c : "+-*/()".toCharArray()) OPERATOR_KINDS[c] = TypeDetector.detectOperatorType(c).getKind();
+    }
+
+    private final SymbolTable symbols = new SymbolTable(); // Таблица символов: имя -> ID и тип
+
+    // Состояние текущего токена; буфер переиспользуется между токенами
+    private final StringBuilder tokenText = new StringBuilder();
+    private int tokenPosition;
+    private int state;
+    private boolean hasDigit;
+    private boolean hasLetter;
+    private int nameLength;
+    private boolean nameHasDigit;
+    private boolean nameHasLetter;
+    private char typeChar;
+    private int invalidPosition;
+    private char invalidSymbol;
+
+    /**
+     * Разбивает выражение на токены за один проход: классификация, проверка и
+     * определение типа выполняются конечным автоматом по классам символов.
+     * Позиции токенов и ошибок соответствуют исходной строке (с пробелами).
+     */
+    public TokenBuffer tokenize(CharSequence line) {
+        return this.tokenize(line, 0, line.length());
+    }
+
+    /**
+     * Разбивает на токены часть текста [start, end); позиции токенов и ошибок
+     * отсчитываются от начала всего текста
+     */
+    public TokenBuffer tokenize(CharSequence text, int start, int end) {
+        TokenBuffer tokens = new TokenBuffer(symbols);
+        this.resetToken();
+        for (int i = start; i < end; i++) {
+            this.scanChar(text.charAt(i), i, tokens);
+        }
+        this.finishToken(tokens);
+        return tokens;
+    }
+
+    /**
+     * Потоковый вариант {@link #tokenize(CharSequence)}: читает вход порциями
+     * фиксированного размера, поэтому выражение не обязано помещаться в одну строку.
+     * Токен, разрезанный границей порции, дочитывается из следующей порции.
+     */
+    public TokenBuffer tokenize(Reader reader) throws IOException {
+        TokenBuffer tokens = new TokenBuffer(symbols);
+        char[] chunk = new char[CHUNK_SIZE];
+        int offset = 0;
+        int read;
+        this.resetToken();
+        while ((read = reader.read(chunk, 0, chunk.length)) != -1) {
+            for (int i = 0; i < read; i++) {
+                this.scanChar(chunk[i], offset + i, tokens);
             }
-            i++;
+            offset += read;
         }
+        this.finishToken(tokens);
+        return tokens;
+    }
 
-        this.processToken(line, index, 0, tokens);
+    public TokenBuffer tokenize(ReadableByteChannel channel) throws IOException {
+        return this.tokenize(Channels.newReader(channel, StandardCharsets.UTF_8));
+    }
 
+    public List<LexcialObject> getTokens(CharSequence line) {
+        return this.tokenize(line).toList();
+    }
 
-        return tokens;
+    public List<LexcialObject> getTokens(Reader reader) throws IOException {
+        return this.tokenize(reader).toList();
     }
 
-    private void processToken(String line, int index, int i, List<LexcialObject> tokens) {
-        String token = this.extractSubstring(line, index, i);
-        if (token.isEmpty()) return;
-        this.validateExtractedString(token, index);
-        LexcialObject lexcialObject = createLexicalObjectFromExtractedString(token, index);
-        tokens.add(lexcialObject);
+    public List<LexcialObject> getTokens(ReadableByteChannel channel) throws IOException {
+        return this.tokenize(channel).toList();
     }
 
-    private String extractSubstring(String line, int index, int i) {
-        String valueBetweenOperators = "";
-        if (i != 0) {
-            valueBetweenOperators = line.substring(index, i);
-        } else {
-            valueBetweenOperators = line.substring(index);
+    private void scanChar(char c, int position, TokenBuffer tokens) {
+        byte charClass = TokenValidator.charClass(c);
+        if (charClass == TokenValidator.WHITESPACE) {
+            // Пробелы не разделяют токены: «var 1» по-прежнему читается как «var1»
+            return;
         }
-        return valueBetweenOperators;
-    }
-
-    private LexcialObject createLexicalObjectFromExtractedString(String extractedString, int index) {
-        // Проверяем, является ли токен идентификатором с типом в квадратных скобках
-        if (extractedString.matches("[A-Za-z_][A-Za-z0-9_]*\\[[fFiI]\\]")) {
-            // Извлекаем имя переменной и тип
-            int bracketIndex = extractedString.indexOf('[');
-            String varName = extractedString.substring(0, bracketIndex);
-            String typeChar = extractedString.substring(bracketIndex + 1, bracketIndex + 2).toLowerCase();
-            
-            VariableType varType = typeChar.equals("f") ? VariableType.FLOAT : VariableType.INTEGER;
-            
-            // Добавляем в таблицу символов, если еще нет
-            if (!symbolTable.containsKey(varName)) {
-                symbolTable.put(varName, nextIdentifierId++);
-                variableTypes.put(varName, varType);
-            } else {
-                // Обновляем тип, если переменная уже есть
-                variableTypes.put(varName, varType);
-            }
-            
-            // Создаем лексический объект с именем переменной (без типа в скобках)
-            LexcialObject lexcialObject = LexicalObjectsFactory
-                    .createLexicalObject(varName, index);
-            
-            // Устанавливаем тип переменной и ID
-            lexcialObject.setVariableType(varType);
-            lexcialObject.setIdentifierId(symbolTable.get(varName));
-            
-            return lexcialObject;
+        if (charClass == TokenValidator.OPERATOR) {
+            this.finishToken(tokens);
+            tokens.addOperator(OPERATOR_KINDS[c], position);
+            return;
         }
-        
-        // Обычный токен
-        LexcialObject lexcialObject = LexicalObjectsFactory
-                .createLexicalObject(extractedString, index);
-        
-        // Если это идентификатор без типа, добавляем в таблицу символов с типом INTEGER по умолчанию
-        if (lexcialObject.getType() instanceof IdentifierType) {
-            String varName = extractedString;
-            if (!symbolTable.containsKey(varName)) {
-                symbolTable.put(varName, nextIdentifierId++);
-                variableTypes.put(varName, VariableType.INTEGER); // По умолчанию целый тип
+
+        if (tokenText.length() == 0) {
+            tokenPosition = position;
+        }
+        if (charClass == TokenValidator.INVALID && invalidPosition < 0) {
+            invalidPosition = position;
+            invalidSymbol = c;
+        }
+        if (state == STATE_IDENTIFIER && charClass == TokenValidator.OPEN_SQUARE) {
+            nameLength = tokenText.length();
+            nameHasDigit = hasDigit;
+            nameHasLetter = hasLetter;
+        }
+        hasDigit |= charClass == TokenValidator.DIGIT;
+        hasLetter |= charClass == TokenValidator.LETTER;
+        state = this.nextState(c, charClass);
+        tokenText.append(c);
+    }
+
+    private int nextState(char c, byte charClass) {
+        switch (state) {
+            case STATE_START:
+                if (c == '0') return STATE_ZERO;
+                if (charClass == TokenValidator.DIGIT) return STATE_INTEGER;
+                if (charClass == TokenValidator.LETTER || charClass == TokenValidator.UNDERSCORE) return STATE_IDENTIFIER;
+                return STATE_OTHER;
+            case STATE_ZERO:
+                return charClass == TokenValidator.DOT ? STATE_DOT : STATE_OTHER;
+            case STATE_INTEGER:
+                if (charClass == TokenValidator.DIGIT) return STATE_INTEGER;
+                return charClass == TokenValidator.DOT ? STATE_DOT : STATE_OTHER;
+            case STATE_DOT:
+            case STATE_FRACTION:
+                return charClass == TokenValidator.DIGIT ? STATE_FRACTION : STATE_OTHER;
+            case STATE_IDENTIFIER:
+                if (charClass == TokenValidator.LETTER || charClass == TokenValidator.DIGIT
+                        || charClass == TokenValidator.UNDERSCORE) return STATE_IDENTIFIER;
+                return charClass == TokenValidator.OPEN_SQUARE ? STATE_TYPE_OPEN : STATE_OTHER;
+            case STATE_TYPE_OPEN:
+                if (c == 'f' || c == 'F' || c == 'i' || c == 'I') {
+                    typeChar = c;
+                    return STATE_TYPE_CHAR;
+                }
+                return STATE_OTHER;
+            case STATE_TYPE_CHAR:
+                return charClass == TokenValidator.CLOSE_SQUARE ? STATE_TYPED : STATE_OTHER;
+            default:
+                return STATE_OTHER;
+        }
+    }
+
+    private void finishToken(TokenBuffer tokens) {
+        if (tokenText.length() == 0) return;
+
+        if (state == STATE_TYPED) {
+            // Идентификатор с типом в квадратных скобках: var1[f]
+            if (nameHasDigit && !nameHasLetter) {
+                throw TokenValidator.illegalConstant(tokenText.substring(0, nameLength), tokenPosition);
             }
-            // Используем тип из таблицы символов (может быть обновлен, если переменная встречалась с аннотацией типа)
-            lexcialObject.setVariableType(variableTypes.get(varName));
-            lexcialObject.setIdentifierId(symbolTable.get(varName));
+            VariableType varType = typeChar == 'f' || typeChar == 'F' ? VariableType.FLOAT : VariableType.INTEGER;
+            this.addIdentifier(tokens, nameLength, varType);
+        } else if (invalidPosition >= 0) {
+            throw TokenValidator.illegalSymbol(invalidSymbol, invalidPosition);
+        } else if (hasDigit && !hasLetter) {
+            if (state != STATE_ZERO && state != STATE_INTEGER && state != STATE_FRACTION) {
+                throw TokenValidator.illegalConstant(tokenText.toString(), tokenPosition);
+            }
+            tokens.addNumber(tokenText, tokenPosition);
+        } else if (state == STATE_IDENTIFIER) {
+            this.addIdentifier(tokens, tokenText.length(), null);
+        } else if (hasDigit) {
+            throw TokenValidator.illegalIdentifier(tokenText.toString(), tokenPosition);
+        } else {
+            tokens.addUnknown(tokenText, tokenPosition);
+        }
+        this.resetToken();
+    }
+
+    /**
+     * Регистрирует идентификатор в таблице символов и добавляет его токен.
+     * Имя — первые nameLength символов текущего токена; подстрока не создается
+     * @param annotatedType тип из аннотации [f]/[i] или null, если аннотации нет
+     */
+    private void addIdentifier(TokenBuffer tokens, int nameLength, VariableType annotatedType) {
+        int id = symbols.find(tokenText, 0, nameLength);
+        if (id == SymbolTable.NOT_FOUND) {
+            // По умолчанию целый тип
+            id = symbols.add(tokenText, 0, nameLength, tokenPosition,
+                    annotatedType != null ? annotatedType : VariableType.INTEGER);
+        } else if (annotatedType != null) {
+            // Обновляем тип, если переменная уже есть
+            symbols.setType(id, annotatedType);
         }
-        
-        return lexcialObject;
+
+        // Используем тип из таблицы символов (может быть обновлен, если переменная встречалась с аннотацией типа)
+        tokens.addIdentifier(id, tokenPosition, symbols.type(id), annotatedType != null);
     }
 
-    private void validateExtractedString(String extractedString, int inlinePosition) {
-        TokenValidator.validateString(extractedString, inlinePosition);
+    private void resetToken() {
+        tokenText.setLength(0);
+        state = STATE_START;
+        hasDigit = false;
+        hasLetter = false;
+        nameHasDigit = false;
+        nameHasLetter = false;
+        invalidPosition = -1;
     }
 
 
     public void createSymbolsFile(String symbolsFile, List<LexcialObject> tokens) {
-        StringBuilder builder = new StringBuilder();
-        // Используем таблицу символов для вывода в правильном порядке
-        for (Map.Entry<String, Integer> entry : symbolTable.entrySet()) {
-            String varName = entry.getKey();
-            Integer id = entry.getValue();
-            VariableType varType = variableTypes.get(varName);
-            builder.append(String.format("%d – %s [%s]\n", id, varName, varType.getRussianName()));
+        IOFileManager.writeFile(symbolsFile, this::writeSymbols);
+    }
+
+    public String formatSymbols() {
+        return IOFileManager.render(this::writeSymbols);
+    }
+
+    /**
+     * Пишет таблицу символов в поток построчно: «номер – имя [тип]»
+     */
+    public void writeSymbols(Writer out) throws IOException {
+        // Номера выдаются в порядке появления, поэтому обход по номерам дает правильный порядок
+        for (int id = 1; id <= symbols.size(); id++) {
+            out.write(Integer.toString(id));
+            out.write(" – ");
+            symbols.writeName(id, out);
+            out.write(" [");
+            out.write(symbols.type(id).getRussianName());
+            out.write("]\n");
         }
-        IOFileManager.createFile(symbolsFile, builder.toString());
     }
 
     public void createTokensFile(String tokensFile, List<LexcialObject> tokens) {
-        StringBuilder builder = new StringBuilder();
-        tokens.forEach(token -> {
-            if (token.getType() instanceof IdentifierType) {
+        TokenBuffer buffer = TokenBuffer.of(tokens);
+        IOFileManager.writeFile(tokensFile, out -> this.writeTokens(buffer, out));
+    }
+
+    public String formatTokens(List<LexcialObject> tokens) {
+        return this.formatTokens(TokenBuffer.of(tokens));
+    }
+
+    public String formatTokens(TokenBuffer tokens) {
+        return IOFileManager.render(out -> this.writeTokens(tokens, out));
+    }
+
+    /**
+     * Пишет токены в поток, по одному в строке
+     */
+    public void writeTokens(TokenBuffer tokens, Writer out) throws IOException {
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.kind(i) == TokenKind.IDENTIFIER) {
                 // Формат: <id,1> - идентификатор с именем var1 вещественного типа
-                String typeInfo = token.getVariableType() == VariableType.FLOAT ? "вещественного типа" : "целого типа";
-                builder.append(String.format("<id,%d>\t- идентификатор с именем %s %s\n", 
-                    token.getIdentifierId(), token.getValue(), typeInfo));
+                out.write("<id,");
+                out.write(Integer.toString(tokens.symbolId(i)));
+                out.write(">\t- идентификатор с именем ");
+                tokens.writeText(i, out);
+                out.write(tokens.variableType(i) == VariableType.FLOAT ? " вещественного типа\n" : " целого типа\n");
             } else {
                 // Для остальных токенов используем стандартный формат
-                builder.append(String.format("<%s>\n", token.getValue()));
+                out.write('<');
+                tokens.writeText(i, out);
+                out.write(">\n");
             }
-        });
-        IOFileManager.createFile(tokensFile, builder.toString());
+        }
     }
-    
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Копия таблицы символов в виде имя -> ID (в порядке появления)
+     */
     public Map<String, Integer> getSymbolTable() {
+        Map<String, Integer> symbolTable = new LinkedHashMap<>();
+        for (int id = 1; id <= symbols.size(); id++) {
+            symbolTable.put(symbols.name(id), id);
+        }
         return symbolTable;
     }
-    
+
+    /**
+     * Копия типов переменных в виде имя -> тип (в порядке появления)
+     */
     public Map<String, VariableType> getVariableTypes() {
+        Map<String, VariableType> variableTypes = new LinkedHashMap<>();
+        for (int id = 1; id <= symbols.size(); id++) {
+            variableTypes.put(symbols.name(id), symbols.type(id));
+        }
         return variableTypes;
     }
 
@@ -1,11 +1,13 @@
 package ru.strakhov.devs.analyzer;
 
 import ru.strakhov.devs.exception.SyntaxException;
-import ru.strakhov.devs.lexical_object.entity.LexcialObject;
 import ru.strakhov.devs.lexical_object.entity.VariableType;
-import ru.strakhov.devs.lexical_object.type.IdentifierType;
-import ru.strakhov.devs.lexical_object.type.NumberType;
 import ru.strakhov.devs.parser.syntax.SyntaxTreeNode;
+import ru.strakhov.devs.parser.syntax.NodeKind;
+import ru.strakhov.devs.parser.syntax.SyntaxTree;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 public class SemanticAnalyzer {
     private final LexicalAnalyzer lexicalAnalyzer;
@@ -20,150 +22,249 @@ public class SemanticAnalyzer {
      * 2. Проверяет деление на константу 0
      */
     public SyntaxTreeNode analyze(SyntaxTreeNode root) {
+        if (root == null) return null;
+        return analyze(SyntaxTree.of(root)).toNode();
+    }
+
+    public SyntaxTree analyze(SyntaxTree tree) {
         // Проверяем деление на 0
-        checkDivisionByZero(root);
-        
+        checkDivisionByZero(tree);
+
         // Добавляем конвертацию типов
-        return addTypeConversions(root);
+        return addTypeConversions(tree);
     }
 
     /**
-     * Проверяет наличие деления на константу 0 в дереве
+     * Упрощает дерево после {@link #analyze} перед генерацией кода:
+     * 1. Сворачивает операции над константами (целые — в арифметике long, вещественные — в double)
+     * 2. Применяет тождества x+0, x-0, x*1, x/1, 0-x = -x, x*0 = 0 и --x = x
+     * 3. Заменяет Int2Float от целой константы вещественной константой
+     * <p>
+     * Корневая операция остается операцией над упрощенными операндами: 2+3 дает add над 2 и 3,
+     * а не лист 5, у которого в трехадресном коде нет инструкции.
+     * <p>
+     * Целое деление на 0 и вещественные операции с бесконечным, NaN или -0.0 результатом
+     * не сворачиваются, чтобы поведение во время выполнения не изменилось.
+     * Для вещественных операций не применяются x+0 и 0-x (меняют знак нуля) и x*0.
      */
-    private void checkDivisionByZero(SyntaxTreeNode node) {
-        if (node == null) return;
-
-        String value = node.getValue();
-        
-        // Проверяем, является ли узел операцией деления
-        if ("/".equals(value) && node.getChildren().size() == 2) {
-            SyntaxTreeNode rightChild = node.getChildren().get(1);
-            
-            // Проверяем, является ли правый операнд константой 0
-            if (rightChild.getNode() != null && 
-                rightChild.getNode().getType() instanceof NumberType) {
-                try {
-                    double numValue = Double.parseDouble(rightChild.getValue());
-                    if (numValue == 0.0) {
-                        throw new SyntaxException("Ошибка: обнаружено деление на константу 0");
-                    }
-                } catch (NumberFormatException e) {
-                    // Не число, пропускаем
-                }
-            }
-        }
+    public SyntaxTreeNode optimize(SyntaxTreeNode analyzedTree) {
+        if (analyzedTree == null) return null;
+        return optimize(SyntaxTree.of(analyzedTree)).toNode();
+    }
 
-        // Рекурсивно проверяем дочерние узлы
-        for (SyntaxTreeNode child : node.getChildren()) {
-            checkDivisionByZero(child);
+    public SyntaxTree optimize(SyntaxTree analyzedTree) {
+        int size = analyzedTree.size();
+        SyntaxTree result = new SyntaxTree(analyzedTree.getTokens(), size);
+        // Потомки упрощаются раньше родителя: mapped[узел] — индекс его упрощенной версии
+        int[] mapped = new int[size];
+        for (int node = 0; node < size; node++) {
+            if (analyzedTree.isLeaf(node)) {
+                mapped[node] = result.copyLeaf(analyzedTree, node);
+                continue;
+            }
+            int right = analyzedTree.right(node);
+            NodeKind kind = analyzedTree.kind(node);
+            int left = mapped[analyzedTree.left(node)];
+            right = right != SyntaxTree.NONE ? mapped[right] : SyntaxTree.NONE;
+            mapped[node] = simplify(result, kind, analyzedTree.token(node), left, right);
+            if (node == size - 1 && result.isLeaf(mapped[node])) {
+                // Корень-операция не сворачивается в лист: иначе трехадресному коду нечего
+                // записать во временную, и значение выражения (2+3, a*1) пропало бы из вывода
+                mapped[node] = result.addOperation(kind, analyzedTree.token(node), left, right);
+            }
         }
+        // Упрощение могло отбросить уже добавленные узлы
+        return result.compact(size > 0 ? mapped[size - 1] : SyntaxTree.NONE);
     }
 
     /**
-     * Добавляет узлы Int2Float для автоматической конвертации типов
-     * @return Модифицированное дерево
+     * Добавляет в tree упрощенную операцию над уже упрощенными потомками
+     * @return индекс результата (новый узел или один из существующих)
      */
-    private SyntaxTreeNode addTypeConversions(SyntaxTreeNode node) {
-        if (node == null) return null;
-
-        // Создаем копию узла
-        SyntaxTreeNode newNode = new SyntaxTreeNode(node.getValue(), node.getNode());
-        
-        // Если это листовой узел (операнд), возвращаем копию
-        if (node.getChildren().isEmpty()) {
-            return newNode;
+    private int simplify(SyntaxTree tree, NodeKind kind, int token, int left, int right) {
+        if (kind == NodeKind.INT_TO_FLOAT) {
+            if (isConstant(tree, left)) {
+                return tree.addConstant(tree.numericValue(left), tree.token(left));
+            }
+            return tree.addOperation(kind, token, left, right);
         }
 
-        // Обрабатываем дочерние узлы рекурсивно
-        for (SyntaxTreeNode child : node.getChildren()) {
-            newNode.getChildren().add(addTypeConversions(child));
+        if (kind == NodeKind.NEGATE) {
+            return simplifyNegation(tree, token, left);
         }
 
-        // Если это бинарная операция, проверяем типы операндов
-        if (isBinaryOperation(node.getValue()) && newNode.getChildren().size() == 2) {
-            SyntaxTreeNode left = newNode.getChildren().get(0);
-            SyntaxTreeNode right = newNode.getChildren().get(1);
-
-            VariableType leftType = getOperandType(left);
-            VariableType rightType = getOperandType(right);
-
-            // Если типы разные, добавляем конвертацию
-            if (leftType == VariableType.INTEGER && rightType == VariableType.FLOAT) {
-                // Левый операнд нужно конвертировать в float
-                SyntaxTreeNode int2FloatNode = new SyntaxTreeNode("Int2Float", null);
-                int2FloatNode.getChildren().add(left);
-                newNode.getChildren().set(0, int2FloatNode);
-            } else if (leftType == VariableType.FLOAT && rightType == VariableType.INTEGER) {
-                // Правый операнд нужно конвертировать в float
-                SyntaxTreeNode int2FloatNode = new SyntaxTreeNode("Int2Float", null);
-                int2FloatNode.getChildren().add(right);
-                newNode.getChildren().set(1, int2FloatNode);
+        return simplifyBinaryOperation(tree, kind, token, left, right);
+    }
+
+    private int simplifyNegation(SyntaxTree tree, int token, int operand) {
+        // --x = x
+        if (tree.kind(operand) == NodeKind.NEGATE) {
+            return tree.left(operand);
+        }
+        if (isConstant(tree, operand)) {
+            if (tree.type(operand) == VariableType.FLOAT) {
+                double result = -tree.numericValue(operand);
+                if (isFoldable(result)) {
+                    return tree.addConstant(result, tree.token(operand));
+                }
+            } else if (tree.hasValue(operand)) {
+                return tree.addConstant(-tree.integerValue(operand), tree.token(operand));
+            }
+        }
+        return tree.addOperation(NodeKind.NEGATE, token, operand, SyntaxTree.NONE);
+    }
+
+    private int simplifyBinaryOperation(SyntaxTree tree, NodeKind operation, int token, int left, int right) {
+        boolean isFloat = tree.type(left) == VariableType.FLOAT || tree.type(right) == VariableType.FLOAT;
+
+        if (isConstant(tree, left) && isConstant(tree, right)) {
+            int folded = isFloat
+                    ? foldFloat(tree, operation, left, right)
+                    : foldInteger(tree, operation, left, right);
+            if (folded != SyntaxTree.NONE) {
+                return folded;
             }
         }
 
-        return newNode;
+        switch (operation) {
+            case ADD:
+                if (!isFloat && isConstantEqualTo(tree, right, 0)) return left;
+                if (!isFloat && isConstantEqualTo(tree, left, 0)) return right;
+                break;
+            case SUBTRACT:
+                if (isConstantEqualTo(tree, right, 0)) return left;
+                if (!isFloat && isConstantEqualTo(tree, left, 0)) {
+                    return simplifyNegation(tree, token, right);
+                }
+                break;
+            case MULTIPLY:
+                if (isConstantEqualTo(tree, right, 1)) return left;
+                if (isConstantEqualTo(tree, left, 1)) return right;
+                // Отбрасывать можно только операнд без деления: целое деление на 0 — ошибка выполнения
+                if (!isFloat && isConstantEqualTo(tree, right, 0) && !containsDivision(tree, left)) return right;
+                if (!isFloat && isConstantEqualTo(tree, left, 0) && !containsDivision(tree, right)) return left;
+                break;
+            case DIVIDE:
+                if (isConstantEqualTo(tree, right, 1)) return left;
+                break;
+        }
+        return tree.addOperation(operation, token, left, right);
     }
 
     /**
-     * Определяет тип операнда
+     * @return свернутая константа или {@link SyntaxTree#NONE}, если сворачивать нельзя (деление на 0)
      */
-    private VariableType getOperandType(SyntaxTreeNode node) {
-        if (node == null) return VariableType.INTEGER;
-
-        // Если это узел Int2Float, результат всегда float
-        if ("Int2Float".equals(node.getValue())) {
-            return VariableType.FLOAT;
+    private int foldInteger(SyntaxTree tree, NodeKind operation, int left, int right) {
+        if (!tree.hasValue(left) || !tree.hasValue(right)) {
+            // Константа вне диапазона long — ошибку сообщит генератор, а не оптимизатор
+            return SyntaxTree.NONE;
         }
+        long a = tree.integerValue(left);
+        long b = tree.integerValue(right);
+        long result;
+        switch (operation) {
+            case ADD: result = a + b; break;
+            case SUBTRACT: result = a - b; break;
+            case MULTIPLY: result = a * b; break;
+            case DIVIDE:
+                if (b == 0) return SyntaxTree.NONE;
+                result = a / b;
+                break;
+            default: return SyntaxTree.NONE;
+        }
+        return tree.addConstant(result, tree.token(left));
+    }
 
-        // Если это листовой узел
-        if (node.getChildren().isEmpty()) {
-            LexcialObject token = node.getNode();
-            if (token == null) return VariableType.INTEGER;
+    private int foldFloat(SyntaxTree tree, NodeKind operation, int left, int right) {
+        double a = tree.numericValue(left);
+        double b = tree.numericValue(right);
+        double result;
+        switch (operation) {
+            case ADD: result = a + b; break;
+            case SUBTRACT: result = a - b; break;
+            case MULTIPLY: result = a * b; break;
+            case DIVIDE: result = a / b; break;
+            default: return SyntaxTree.NONE;
+        }
+        return isFoldable(result) ? tree.addConstant(result, tree.token(left)) : SyntaxTree.NONE;
+    }
 
-            // Если это идентификатор, берем тип из таблицы символов
-            if (token.getType() instanceof IdentifierType) {
-                VariableType varType = token.getVariableType();
-                return varType != null ? varType : VariableType.INTEGER;
-            }
+    /**
+     * Бесконечность, NaN и -0.0 нельзя записать константой выражения
+     */
+    private boolean isFoldable(double value) {
+        return Double.isFinite(value) && Double.doubleToRawLongBits(value) != Double.doubleToRawLongBits(-0.0);
+    }
 
-            // Если это число, определяем тип по значению
-            if (token.getType() instanceof NumberType) {
-                String value = token.getValue();
-                try {
-                    double numValue = Double.parseDouble(value);
-                    // Если число имеет дробную часть или это вещественное число
-                    if (value.contains(".") || value.contains("e") || value.contains("E")) {
-                        return VariableType.FLOAT;
-                    }
-                    // Целые числа по умолчанию
-                    return VariableType.INTEGER;
-                } catch (NumberFormatException e) {
-                    return VariableType.INTEGER;
-                }
+    private boolean containsDivision(SyntaxTree tree, int node) {
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            int current = stack.pop();
+            if (tree.kind(current) == NodeKind.DIVIDE) return true;
+            if (tree.isLeaf(current)) continue;
+            stack.push(tree.left(current));
+            if (tree.right(current) != SyntaxTree.NONE) {
+                stack.push(tree.right(current));
             }
         }
+        return false;
+    }
+
+    private boolean isConstant(SyntaxTree tree, int node) {
+        return tree.kind(node) == NodeKind.CONSTANT;
+    }
 
-        // Для операций результат зависит от типов операндов
-        // Если есть хотя бы один float операнд, результат float
-        if (!node.getChildren().isEmpty()) {
-            for (SyntaxTreeNode child : node.getChildren()) {
-                VariableType childType = getOperandType(child);
-                if (childType == VariableType.FLOAT) {
-                    return VariableType.FLOAT;
+    private boolean isConstantEqualTo(SyntaxTree tree, int node, int expected) {
+        return isConstant(tree, node) && tree.numericValue(node) == expected;
+    }
+
+    /**
+     * Проверяет наличие деления на константу 0 в дереве
+     */
+    private void checkDivisionByZero(SyntaxTree tree) {
+        for (int node = 0; node < tree.size(); node++) {
+            // Проверяем, является ли узел операцией деления с правым операндом — константой 0
+            if (tree.kind(node) == NodeKind.DIVIDE) {
+                int rightChild = tree.right(node);
+                if (isConstant(tree, rightChild) && tree.numericValue(rightChild) == 0.0) {
+                    throw new SyntaxException("Ошибка: обнаружено деление на константу 0");
                 }
             }
-            // Если все операнды INTEGER, результат INTEGER
-            return VariableType.INTEGER;
         }
-
-        return VariableType.INTEGER;
     }
 
     /**
-     * Проверяет, является ли значение бинарной операцией
+     * Добавляет узлы Int2Float для автоматической конвертации типов.
+     * Конвертация добавляется сразу после операнда, поэтому порядок узлов остается обратным обходом
+     * @return Модифицированное дерево
      */
-    private boolean isBinaryOperation(String value) {
-        return "+".equals(value) || "-".equals(value) || 
-               "*".equals(value) || "/".equals(value);
+    private SyntaxTree addTypeConversions(SyntaxTree tree) {
+        int size = tree.size();
+        SyntaxTree result = new SyntaxTree(tree.getTokens(), size);
+        int[] parents = tree.parents();
+        int[] mapped = new int[size];
+        for (int node = 0; node < size; node++) {
+            // Создаем копию узла
+            int copy;
+            if (tree.isLeaf(node)) {
+                copy = result.copyLeaf(tree, node);
+            } else {
+                int right = tree.right(node);
+                copy = result.addOperation(tree.kind(node), tree.token(node), mapped[tree.left(node)],
+                        right != SyntaxTree.NONE ? mapped[right] : SyntaxTree.NONE);
+            }
+
+            // Если операнд бинарной операции целый, а другой операнд вещественный, конвертируем его
+            int parent = parents[node];
+            if (parent != SyntaxTree.NONE && tree.kind(parent).isBinary()) {
+                int sibling = tree.left(parent) == node ? tree.right(parent) : tree.left(parent);
+                if (tree.type(node) == VariableType.INTEGER && tree.type(sibling) == VariableType.FLOAT) {
+                    copy = result.addOperation(NodeKind.INT_TO_FLOAT, SyntaxTree.NONE, copy, SyntaxTree.NONE);
+                }
+            }
+            mapped[node] = copy;
+        }
+        return result;
     }
 }
@@ -0,0 +1,61 @@
+package ru.strakhov.devs.cache;
+
+import ru.strakhov.devs.manager.BufferedOutputSink;
+import ru.strakhov.devs.manager.OutputSink;
+
+import java.util.List;
+
+/**
+ * Результаты стадий одного выражения — именованные файлы в том порядке,
+ * в каком их выдал режим обработки. Не изменяется после создания
+ */
+public final class CachedOutput {
+    // Заголовок записи в памяти: массивы и строки, примерно
+    private static final long ENTRY_OVERHEAD = 64;
+
+    private final String[] fileNames;
+    private final String[] contents;
+    private final long weight;
+
+    public CachedOutput(List<String> fileNames, List<String> contents) {
+        if (fileNames.size() != contents.size()) {
+            throw new IllegalArgumentException("Число имен файлов не совпадает с числом результатов");
+        }
+        this.fileNames = fileNames.toArray(new String[0]);
+        this.contents = contents.toArray(new String[0]);
+        long chars = 0;
+        for (int i = 0; i < this.fileNames.length; i++) {
+            chars += this.fileNames[i].length() + this.contents[i].length();
+        }
+        this.weight = ENTRY_OVERHEAD + chars * Character.BYTES;
+    }
+
+    public static CachedOutput of(BufferedOutputSink sink) {
+        return new CachedOutput(sink.getFileNames(), sink.getContents());
+    }
+
+    public int size() {
+        return fileNames.length;
+    }
+
+    public String getFileName(int index) {
+        return fileNames[index];
+    }
+
+    public String getContent(int index) {
+        return contents[index];
+    }
+
+    /**
+     * Примерный объем записи в памяти, байт; по нему ограничивается размер кэша
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    public void replayTo(OutputSink sink) {
+        for (int i = 0; i < fileNames.length; i++) {
+            sink.write(fileNames[i], contents[i]);
+        }
+    }
+}
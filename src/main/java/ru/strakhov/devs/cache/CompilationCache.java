@@ -0,0 +1,336 @@
+package ru.strakhov.devs.cache;
+
+import ru.strakhov.devs.validator.TokenValidator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Кэш результатов компиляции с адресацией по содержимому: ключ — SHA-256 отпечатка сборки,
+ * режима, имен выходных файлов и выражения без пробельных символов. Пробелы не разделяют
+ * токены, поэтому выражения, отличающиеся только ими, дают одинаковые результаты.
+ * Отпечаток — хеш классов компилятора: после изменения генераторов или формата вывода
+ * старые записи на диске просто перестают находиться.
+ * <p>
+ * Первый уровень — в памяти, вытесняются давно не использованные записи сверх
+ * заданного числа записей или объема. Второй, необязательный, — каталог на диске,
+ * по файлу на ключ; он переживает перезапуск и не ограничивается по размеру.
+ * Кэшируются только успешные результаты: сообщения об ошибках содержат позиции
+ * в исходной строке, а они от пробелов зависят. Потокобезопасен.
+ */
+public class CompilationCache {
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    // Результаты длинных выражений пришлось бы собирать в памяти вместо потоковой записи
+    public static final int MAX_EXPRESSION_LENGTH = 64 * 1024;
+
+    private static final String FILE_SUFFIX = ".cache";
+    private static final int FILE_FORMAT = 1;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<String, CachedOutput> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private Path directory;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder diskErrors = new LongAdder();
+
+    public CompilationCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    public CompilationCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("Размер кэша не может быть отрицательным");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Включает уровень на диске; каталог создается при необходимости
+     */
+    public void setDirectory(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Стоит ли кэшировать выражение; результаты длинных выражений пишутся потоково мимо кэша
+     */
+    public static boolean isCacheable(CharSequence expression) {
+        return expression.length() <= MAX_EXPRESSION_LENGTH;
+    }
+
+    /**
+     * Ключ результатов режима mode для выражения: шестнадцатеричный SHA-256
+     */
+    public static String key(String mode, String tokensFile, String symbolsFile, CharSequence expression) {
+        StringBuilder normalized = new StringBuilder(expression.length() + 128)
+                .append(Build.FINGERPRINT).append('\0')
+                .append(mode).append('\0')
+                .append(tokensFile).append('\0')
+                .append(symbolsFile).append('\0');
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (TokenValidator.charClass(c) != TokenValidator.WHITESPACE) {
+                normalized.append(c);
+            }
+        }
+        return hex(sha256().digest(normalized.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String hex(byte[] digest) {
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Результаты по ключу или null; найденное на диске поднимается в память
+     */
+    public CachedOutput get(String key) {
+        CachedOutput output;
+        synchronized (this) {
+            output = entries.get(key);
+        }
+        if (output != null) {
+            memoryHits.increment();
+            return output;
+        }
+        output = this.readFile(key);
+        if (output == null) {
+            misses.increment();
+            return null;
+        }
+        diskHits.increment();
+        this.putInMemory(key, output);
+        return output;
+    }
+
+    public void put(String key, CachedOutput output) {
+        this.putInMemory(key, output);
+        this.writeFile(key, output);
+    }
+
+    private synchronized void putInMemory(String key, CachedOutput output) {
+        if (output.getWeight() > maxBytes || maxEntries == 0) {
+            return;
+        }
+        CachedOutput previous = entries.put(key, output);
+        if (previous != null) {
+            bytes -= previous.getWeight();
+        }
+        bytes += output.getWeight();
+        // Порядок обхода — от давно не использованных к недавним
+        Iterator<CachedOutput> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || bytes > maxBytes) {
+            bytes -= eldest.next().getWeight();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Очищает уровень в памяти; файлы на диске остаются
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getHits() {
+        return memoryHits.sum() + diskHits.sum();
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.sum();
+    }
+
+    public long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getDiskErrors() {
+        return diskErrors.sum();
+    }
+
+    /**
+     * Сводка счетчиков в одну строку JSON
+     */
+    public String toJson() {
+        return "{\"cache\":{\"entries\":" + this.size()
+                + ",\"bytes\":" + this.getBytes()
+                + ",\"memoryHits\":" + this.getMemoryHits()
+                + ",\"diskHits\":" + this.getDiskHits()
+                + ",\"misses\":" + this.getMisses()
+                + ",\"evictions\":" + this.getEvictions()
+                + ",\"diskErrors\":" + this.getDiskErrors()
+                + "}}";
+    }
+
+    /**
+     * Запись с диска или null, если ее нет. Поврежденный файл считается промахом:
+     * он будет перезаписан после компиляции
+     */
+    private CachedOutput readFile(String key) {
+        if (directory == null) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(directory.resolve(key + FILE_SUFFIX))))) {
+            if (in.readInt() != FILE_FORMAT) {
+                return null;
+            }
+            int count = in.readInt();
+            List<String> fileNames = new ArrayList<>(count);
+            List<String> contents = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                fileNames.add(in.readUTF());
+                byte[] content = new byte[in.readInt()];
+                in.readFully(content);
+                contents.add(new String(content, StandardCharsets.UTF_8));
+            }
+            return new CachedOutput(fileNames, contents);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            diskErrors.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Пишет запись во временный файл и переименовывает его, чтобы параллельные
+     * читатели и другие процессы не увидели запись наполовину. Ошибка записи
+     * не прерывает компиляцию, а только учитывается в счетчике
+     */
+    private void writeFile(String key, CachedOutput output) {
+        if (directory == null) return;
+        Path temporary = null;
+        try {
+            temporary = Files.createTempFile(directory, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(FILE_FORMAT);
+                out.writeInt(output.size());
+                for (int i = 0; i < output.size(); i++) {
+                    out.writeUTF(output.getFileName(i));
+                    byte[] content = output.getContent(i).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(content.length);
+                    out.write(content);
+                }
+            }
+            Files.move(temporary, directory.resolve(key + FILE_SUFFIX),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            diskErrors.increment();
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                    // Временный файл останется, на чтение он не влияет
+                }
+            }
+        }
+    }
+
+    /**
+     * Отпечаток считается один раз, при первом вычислении ключа
+     */
+    private static final class Build {
+        static final String FINGERPRINT = fingerprint();
+
+        /**
+         * SHA-256 содержимого jar-файла компилятора или, при запуске из каталога классов,
+         * всех файлов каталога. Если источник классов не прочитать, отпечаток случайный:
+         * записи на диске тогда живут только до конца процесса, но устаревшими не бывают
+         */
+        private static String fingerprint() {
+            try {
+                CodeSource source = CompilationCache.class.getProtectionDomain().getCodeSource();
+                if (source != null) {
+                    Path location = Paths.get(source.getLocation().toURI());
+                    MessageDigest digest = sha256();
+                    if (Files.isDirectory(location)) {
+                        List<Path> files;
+                        try (Stream<Path> walk = Files.walk(location)) {
+                            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                        }
+                        for (Path file : files) {
+                            digest.update(location.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                            digest.update(Files.readAllBytes(file));
+                        }
+                    } else {
+                        try (InputStream in = Files.newInputStream(location)) {
+                            byte[] buffer = new byte[64 * 1024];
+                            int read;
+                            while ((read = in.read(buffer)) != -1) {
+                                digest.update(buffer, 0, read);
+                            }
+                        }
+                    }
+                    return hex(digest.digest());
+                }
+            } catch (IOException | URISyntaxException | RuntimeException e) {
+                // Ниже — случайный отпечаток
+            }
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
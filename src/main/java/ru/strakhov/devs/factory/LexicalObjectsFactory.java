@@ -7,10 +7,15 @@ import ru.strakhov.devs.lexical_object.entity.LexcialObject;
 public class LexicalObjectsFactory {
     public static LexcialObject createLexicalObject(String value, int position) {
         LexicalObjectType type = TypeDetector.detectType(value);
+        return createLexicalObject(value, position, type);
+    }
+
+    public static LexcialObject createLexicalObject(String value, int position, LexicalObjectType type) {
         return LexcialObject
                 .builder()
                 .value(value)
                 .type(type)
+                .kind(type.getKind())
                 .inLinePosition(position)
                 .build();
     }
@@ -0,0 +1,359 @@
+package ru.strakhov.devs.generator;
+
+import ru.strakhov.devs.analyzer.CompilationUnit;
+import ru.strakhov.devs.analyzer.LexicalAnalyzer;
+import ru.strakhov.devs.analyzer.SemanticAnalyzer;
+import ru.strakhov.devs.lexical_object.entity.VariableType;
+import ru.strakhov.devs.parser.syntax.NodeKind;
+import ru.strakhov.devs.parser.syntax.SyntaxTree;
+import ru.strakhov.devs.parser.syntax.SyntaxTreeNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Компилирует дерево после семантического анализа (с узлами Int2Float) в скрытый класс,
+ * реализующий {@link CompiledExpression}. Байткод формируется вручную, без внешних
+ * зависимостей: прямолинейный метод без ветвлений, который C2 может встроить в место вызова.
+ * Целые операции выполняются над long, вещественные — над double.
+ * <p>
+ * Проект собирается под Java 21, а там API java.lang.classfile есть только во внутреннем
+ * пакете JDK (финальным оно стало в Java 24), поэтому байты класса пишутся напрямую.
+ */
+public class BytecodeGenerator {
+    private static final String CLASS_NAME = "ru/strakhov/devs/generator/CompiledExpression$Generated";
+    private static final String INTERFACE_NAME = "ru/strakhov/devs/generator/CompiledExpression";
+    private static final int MAX_CODE_LENGTH = 65535;
+
+    // Опкоды JVM, используемые генератором
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int LCONST_0 = 0x09;
+    private static final int DCONST_0 = 0x0e;
+    private static final int DALOAD = 0x31;
+    private static final int LADD = 0x61;
+    private static final int DADD = 0x63;
+    private static final int LSUB = 0x65;
+    private static final int DSUB = 0x67;
+    private static final int LMUL = 0x69;
+    private static final int DMUL = 0x6b;
+    private static final int LDIV = 0x6d;
+    private static final int DDIV = 0x6f;
+    private static final int LNEG = 0x75;
+    private static final int DNEG = 0x77;
+    private static final int L2D = 0x8a;
+    private static final int D2L = 0x8f;
+    private static final int DRETURN = 0xaf;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+
+    private final LexicalAnalyzer lexicalAnalyzer;
+
+    public BytecodeGenerator(LexicalAnalyzer lexicalAnalyzer) {
+        this.lexicalAnalyzer = lexicalAnalyzer;
+    }
+
+    /**
+     * Выполняет семантический анализ, упрощает и компилирует полученное дерево
+     */
+    public CompiledExpression generate(SyntaxTreeNode root) {
+        return generate(SyntaxTree.of(root));
+    }
+
+    public CompiledExpression generate(SyntaxTree tree) {
+        SemanticAnalyzer semanticAnalyzer = new SemanticAnalyzer(lexicalAnalyzer);
+        return compileAnalyzed(semanticAnalyzer.optimize(semanticAnalyzer.analyze(tree)));
+    }
+
+    /**
+     * Компилирует упрощенное дерево единицы компиляции без повторного анализа
+     */
+    public CompiledExpression generate(CompilationUnit unit) {
+        return compileAnalyzed(unit.getOptimizedTree());
+    }
+
+    /**
+     * Компилирует дерево, уже прошедшее семантический анализ
+     */
+    public static CompiledExpression compileAnalyzed(SyntaxTreeNode analyzedTree) {
+        return compileAnalyzed(SyntaxTree.of(analyzedTree));
+    }
+
+    public static CompiledExpression compileAnalyzed(SyntaxTree analyzedTree) {
+        byte[] classBytes = new ClassWriter().write(analyzedTree);
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classBytes, true);
+            return (CompiledExpression) lookup
+                    .findConstructor(lookup.lookupClass(), MethodType.methodType(void.class))
+                    .invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Не удалось загрузить скомпилированное выражение", e);
+        }
+    }
+
+    /**
+     * Собирает class-файл: пул констант, конструктор и метод eval
+     */
+    private static class ClassWriter {
+        private final ByteArrayOutputStream constantPoolBytes = new ByteArrayOutputStream();
+        private final DataOutputStream constantPool = new DataOutputStream(constantPoolBytes);
+        private final Map<String, Integer> constants = new HashMap<>();
+        private int constantCount = 1;
+
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        private int stackDepth;
+        private int maxStack;
+
+        byte[] write(SyntaxTree tree) {
+            try {
+                int thisClass = this.classConstant(CLASS_NAME);
+                int superClass = this.classConstant("java/lang/Object");
+                int interfaceClass = this.classConstant(INTERFACE_NAME);
+                int initName = this.utf8("<init>");
+                int initDescriptor = this.utf8("()V");
+                int superInit = this.methodRef(superClass, initName, initDescriptor);
+                int evalName = this.utf8("eval");
+                int evalDescriptor = this.utf8("([D)D");
+                int codeAttribute = this.utf8("Code");
+
+                this.emitExpression(tree);
+                this.emit(DRETURN);
+                if (code.size() > MAX_CODE_LENGTH) {
+                    throw new IllegalArgumentException("Выражение слишком велико для одного метода JVM: "
+                            + code.size() + " байт кода");
+                }
+
+                ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(classBytes);
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                // Формат класса Java 17 читается любой поддерживаемой средой; ветвлений нет,
+                // поэтому StackMapTable не нужна
+                out.writeShort(61);
+                out.writeShort(constantCount);
+                constantPoolBytes.writeTo(out);
+                out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(1);
+                out.writeShort(interfaceClass);
+                out.writeShort(0); // полей нет
+                out.writeShort(2);
+
+                // public <init>() { super(); }
+                out.writeShort(0x0001);
+                out.writeShort(initName);
+                out.writeShort(initDescriptor);
+                byte[] initCode = {(byte) ALOAD_0, (byte) INVOKESPECIAL,
+                        (byte) (superInit >> 8), (byte) superInit, (byte) RETURN};
+                this.writeCodeAttribute(out, codeAttribute, 1, 1, initCode);
+
+                // public final double eval(double[] vars)
+                out.writeShort(0x0001 | 0x0010);
+                out.writeShort(evalName);
+                out.writeShort(evalDescriptor);
+                this.writeCodeAttribute(out, codeAttribute, maxStack, 2, code.toByteArray());
+
+                out.writeShort(0); // атрибутов класса нет
+                return classBytes.toByteArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeCodeAttribute(DataOutputStream out, int nameIndex, int maxStack, int maxLocals,
+                                        byte[] bytecode) throws IOException {
+            out.writeShort(1); // у метода единственный атрибут — Code
+            out.writeShort(nameIndex);
+            out.writeInt(12 + bytecode.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(bytecode.length);
+            out.write(bytecode);
+            out.writeShort(0); // таблица исключений
+            out.writeShort(0); // атрибуты
+        }
+
+        /**
+         * Выпускает код узлов подряд: массивы дерева уже хранят обратный порядок обхода
+         */
+        private void emitExpression(SyntaxTree tree) {
+            int[] parents = tree.parents();
+            for (int node = 0; node < tree.size(); node++) {
+                VariableType type = tree.type(node);
+                this.emitNode(tree, node, type);
+                int parent = parents[node];
+                // Семантический анализ уже выровнял типы; подстраховка на случай,
+                // если переменная получила тип [f] после первого использования
+                if (parent != SyntaxTree.NONE && tree.kind(parent) != NodeKind.INT_TO_FLOAT
+                        && type == VariableType.INTEGER && tree.type(parent) == VariableType.FLOAT) {
+                    this.emit(L2D);
+                }
+            }
+            if (tree.size() > 0 && tree.type(tree.root()) == VariableType.INTEGER) {
+                this.emit(L2D);
+            }
+        }
+
+        private void emitNode(SyntaxTree tree, int node, VariableType type) {
+            boolean isFloat = type == VariableType.FLOAT;
+            switch (tree.kind(node)) {
+                case IDENTIFIER:
+                    // vars[id]: ссылка и индекс на стеке, затем double
+                    this.emit(ALOAD_1);
+                    this.pushStack(1);
+                    this.pushIntIndex(tree.symbolId(node));
+                    this.emit(DALOAD);
+                    this.popStack(2);
+                    this.pushStack(2);
+                    if (!isFloat) {
+                        this.emit(D2L);
+                    }
+                    return;
+                case CONSTANT:
+                    if (isFloat) {
+                        this.pushFloatConstant(tree.floatValue(node));
+                    } else {
+                        this.pushIntegerConstant(tree.integerValue(node));
+                    }
+                    return;
+                case INT_TO_FLOAT:
+                    if (tree.type(tree.left(node)) == VariableType.INTEGER) {
+                        this.emit(L2D);
+                    }
+                    return;
+                case NEGATE:
+                    this.emit(isFloat ? DNEG : LNEG);
+                    return;
+                case ADD: this.emit(isFloat ? DADD : LADD); break;
+                case SUBTRACT: this.emit(isFloat ? DSUB : LSUB); break;
+                case MULTIPLY: this.emit(isFloat ? DMUL : LMUL); break;
+                case DIVIDE: this.emit(isFloat ? DDIV : LDIV); break;
+            }
+            this.popStack(2);
+        }
+
+        private void pushIntIndex(int index) {
+            if (index <= 5) {
+                this.emit(ICONST_0 + index);
+            } else if (index <= Byte.MAX_VALUE) {
+                this.emit(BIPUSH);
+                this.emit(index);
+            } else if (index <= Short.MAX_VALUE) {
+                this.emit(SIPUSH);
+                this.emit(index >> 8);
+                this.emit(index);
+            } else {
+                int constant = this.constant("I:" + index, 3, index);
+                this.emit(LDC_W);
+                this.emit(constant >> 8);
+                this.emit(constant);
+            }
+            this.pushStack(1);
+        }
+
+        private void pushFloatConstant(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            if (bits == 0L || value == 1.0) {
+                this.emit(DCONST_0 + (int) value);
+            } else {
+                this.emitWide(this.constant("D:" + bits, 6, bits));
+            }
+            this.pushStack(2);
+        }
+
+        private void pushIntegerConstant(long value) {
+            if (value == 0L || value == 1L) {
+                this.emit(LCONST_0 + (int) value);
+            } else {
+                this.emitWide(this.constant("J:" + value, 5, value));
+            }
+            this.pushStack(2);
+        }
+
+        private void emitWide(int constantIndex) {
+            this.emit(LDC2_W);
+            this.emit(constantIndex >> 8);
+            this.emit(constantIndex);
+        }
+
+        private void emit(int b) {
+            code.write(b);
+        }
+
+        private void pushStack(int slots) {
+            stackDepth += slots;
+            maxStack = Math.max(maxStack, stackDepth);
+        }
+
+        private void popStack(int slots) {
+            stackDepth -= slots;
+        }
+
+        private int utf8(String value) throws IOException {
+            Integer index = constants.get("U:" + value);
+            if (index != null) return index;
+            constantPool.writeByte(1);
+            constantPool.writeUTF(value);
+            constants.put("U:" + value, constantCount);
+            return constantCount++;
+        }
+
+        private int classConstant(String internalName) throws IOException {
+            int name = this.utf8(internalName);
+            constantPool.writeByte(7);
+            constantPool.writeShort(name);
+            return constantCount++;
+        }
+
+        private int methodRef(int classIndex, int nameIndex, int descriptorIndex) throws IOException {
+            constantPool.writeByte(12);
+            constantPool.writeShort(nameIndex);
+            constantPool.writeShort(descriptorIndex);
+            int nameAndType = constantCount++;
+            constantPool.writeByte(10);
+            constantPool.writeShort(classIndex);
+            constantPool.writeShort(nameAndType);
+            return constantCount++;
+        }
+
+        /**
+         * Добавляет числовую константу: tag 3 — int, 5 — long, 6 — double (как биты)
+         */
+        private int constant(String key, int tag, long value) {
+            Integer index = constants.get(key);
+            if (index != null) return index;
+            try {
+                constantPool.writeByte(tag);
+                if (tag == 3) {
+                    constantPool.writeInt((int) value);
+                } else {
+                    constantPool.writeLong(value);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (constantCount + 2 > 0xFFFF) {
+                throw new IllegalArgumentException("Слишком много констант для одного класса");
+            }
+            int added = constantCount;
+            constants.put(key, added);
+            // long и double занимают в пуле констант две позиции
+            constantCount += tag == 3 ? 1 : 2;
+            return added;
+        }
+    }
+}
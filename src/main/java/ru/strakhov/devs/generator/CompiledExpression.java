@@ -0,0 +1,12 @@
+package ru.strakhov.devs.generator;
+
+/**
+ * Выражение, скомпилированное {@link BytecodeGenerator} в байткод JVM.
+ * Значения переменных передаются массивом, индекс — идентификатор {@code <id,N>}
+ * (нулевой элемент не используется). Целые переменные усекаются до long,
+ * целый результат возвращается как double.
+ */
+@FunctionalInterface
+public interface CompiledExpression {
+    double eval(double[] vars);
+}
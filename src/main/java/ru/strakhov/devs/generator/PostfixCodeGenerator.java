@@ -1,34 +1,33 @@
 package ru.strakhov.devs.generator;
 
+import ru.strakhov.devs.analyzer.CompilationUnit;
 import ru.strakhov.devs.analyzer.LexicalAnalyzer;
 import ru.strakhov.devs.analyzer.SemanticAnalyzer;
-import ru.strakhov.devs.lexical_object.entity.LexcialObject;
+import ru.strakhov.devs.lexical_object.entity.SymbolTable;
 import ru.strakhov.devs.lexical_object.entity.VariableType;
-import ru.strakhov.devs.lexical_object.type.IdentifierType;
-import ru.strakhov.devs.lexical_object.type.NumberType;
 import ru.strakhov.devs.manager.IOFileManager;
+import ru.strakhov.devs.parser.syntax.NodeKind;
 import ru.strakhov.devs.parser.syntax.SyntaxParser;
+import ru.strakhov.devs.parser.syntax.SyntaxTree;
 import ru.strakhov.devs.parser.syntax.SyntaxTreeNode;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class PostfixCodeGenerator {
     private final LexicalAnalyzer lexicalAnalyzer;
-    private final List<String> postfixTokens = new ArrayList<>();
-    private final Map<String, Integer> symbolTable = new LinkedHashMap<>();
-    private final Map<String, VariableType> variableTypes = new LinkedHashMap<>();
+    private final SymbolTable symbolTable;
+    // Упрощенное дерево: его узлы уже лежат в порядке постфиксной записи
+    private SyntaxTree tree;
 
     public PostfixCodeGenerator(LexicalAnalyzer lexicalAnalyzer) {
         this.lexicalAnalyzer = lexicalAnalyzer;
-        // Копируем таблицу символов из лексического анализатора
-        Map<String, Integer> originalSymbolTable = lexicalAnalyzer.getSymbolTable();
-        Map<String, VariableType> originalVariableTypes = lexicalAnalyzer.getVariableTypes();
-        
-        symbolTable.putAll(originalSymbolTable);
-        variableTypes.putAll(originalVariableTypes);
+        // Постфиксная запись не добавляет символов, поэтому таблица лексического анализатора используется напрямую
+        this.symbolTable = lexicalAnalyzer.getSymbols();
     }
 
     /**
@@ -36,116 +35,153 @@ public class PostfixCodeGenerator {
      */
     public void generate(SyntaxTreeNode root) {
         if (root == null) return;
-        
-        // Сначала выполняем семантический анализ для получения дерева с Int2Float
+        generate(SyntaxTree.of(root));
+    }
+
+    public void generate(SyntaxTree tree) {
+        // Сначала выполняем семантический анализ для получения дерева с Int2Float и упрощаем его
         SemanticAnalyzer semanticAnalyzer = new SemanticAnalyzer(lexicalAnalyzer);
-        SyntaxTreeNode modifiedTree = semanticAnalyzer.analyze(root);
-        
+        SyntaxTree modifiedTree = semanticAnalyzer.optimize(semanticAnalyzer.analyze(tree));
+
         // Генерируем постфиксную нотацию из модифицированного дерева
         generatePostfix(modifiedTree);
     }
 
     /**
-     * Рекурсивно генерирует постфиксную нотацию из узла дерева
+     * Генерирует постфиксную нотацию по дереву единицы компиляции без повторного анализа.
+     * Единица должна быть построена тем же лексическим анализатором, что передан в конструктор
      */
-    private void generatePostfix(SyntaxTreeNode node) {
-        if (node == null) return;
-
-        String value = node.getValue();
-        
-        // Если это листовой узел (операнд)
-        if (node.getChildren().isEmpty()) {
-            LexcialObject token = node.getNode();
-            if (token == null) return;
-
-            // Если это идентификатор
-            if (token.getType() instanceof IdentifierType) {
-                postfixTokens.add(formatIdentifier(token.getIdentifierId()));
-                return;
-            }
-            
-            // Если это число
-            if (token.getType() instanceof NumberType) {
-                postfixTokens.add(String.format("<%s>", token.getValue()));
-                return;
-            }
-            
-            return;
-        }
+    public void generate(CompilationUnit unit) {
+        generatePostfix(unit.getOptimizedTree());
+    }
 
-        // Если это узел Int2Float
-        if ("Int2Float".equals(value)) {
-            // Сначала обрабатываем операнд
-            generatePostfix(node.getChildren().get(0));
-            // Затем добавляем операцию конвертации
-            postfixTokens.add("<i2f>");
-            return;
-        }
+    /**
+     * Запоминает дерево: его узлы уже хранятся в обратном порядке обхода, поэтому
+     * запись выдается {@link #writeCode} одним проходом по массиву, без промежуточного списка
+     */
+    private void generatePostfix(SyntaxTree tree) {
+        this.tree = tree;
+    }
 
-        // Если это бинарная операция
-        if (isBinaryOperation(value)) {
-            // Сначала обрабатываем левый операнд
-            generatePostfix(node.getChildren().get(0));
-            // Затем правый операнд
-            generatePostfix(node.getChildren().get(1));
-            // Затем добавляем операцию
-            postfixTokens.add(String.format("<%s>", value));
-            return;
-        }
+    /**
+     * Число токенов постфиксной записи
+     */
+    public int getTokenCount() {
+        return tree != null ? tree.size() : 0;
+    }
 
-        // Если это унарный минус
-        if ("-".equals(value) && node.getChildren().size() == 1) {
-            // Обрабатываем операнд
-            generatePostfix(node.getChildren().get(0));
-            // Добавляем операцию унарного минуса
-            postfixTokens.add("<-u>");
-            return;
+    /**
+     * Токены постфиксной записи; список создается заново при каждом вызове
+     */
+    public List<String> getPostfixTokens() {
+        List<String> postfixTokens = new ArrayList<>(this.getTokenCount());
+        for (int node = 0; node < this.getTokenCount(); node++) {
+            postfixTokens.add(formatToken(node));
         }
+        return postfixTokens;
     }
 
     /**
-     * Форматирует идентификатор как <id,N>
+     * Типы вхождений идентификаторов в порядке записи, как их вывел семантический анализ.
+     * Могут отличаться от итогового типа в таблице: {@code a} в {@code a/2+a[f]} сначала целое
      */
-    private String formatIdentifier(int id) {
-        return String.format("<id,%d>", id);
+    public List<VariableType> getOccurrenceTypes() {
+        List<VariableType> occurrenceTypes = new ArrayList<>();
+        for (int node = 0; node < this.getTokenCount(); node++) {
+            if (tree.kind(node) == NodeKind.IDENTIFIER) {
+                occurrenceTypes.add(tree.type(node));
+            }
+        }
+        return occurrenceTypes;
+    }
+
+    private String formatToken(int node) {
+        switch (tree.kind(node)) {
+            case IDENTIFIER:
+                return "<id," + tree.symbolId(node) + ">";
+            case INT_TO_FLOAT:
+                return "<i2f>";
+            case NEGATE:
+                return "<-u>";
+            default:
+                // Константа или бинарная операция
+                return "<" + tree.label(node) + ">";
+        }
     }
 
     /**
-     * Проверяет, является ли значение бинарной операцией
+     * Возвращает типы переменных по их идентификатору в таблице символов
      */
-    private boolean isBinaryOperation(String value) {
-        return "+".equals(value) || "-".equals(value) || 
-               "*".equals(value) || "/".equals(value);
+    public Map<Integer, VariableType> getIdentifierTypes() {
+        Map<Integer, VariableType> identifierTypes = new HashMap<>();
+        for (int id = 1; id <= symbolTable.size(); id++) {
+            identifierTypes.put(id, symbolTable.type(id));
+        }
+        return identifierTypes;
     }
 
     /**
      * Сохраняет постфиксную нотацию в файл
      */
     public void saveToFile(String filename) {
-        StringBuilder builder = new StringBuilder();
-        for (int i = 0; i < postfixTokens.size(); i++) {
-            builder.append(postfixTokens.get(i));
-            if (i < postfixTokens.size() - 1) {
-                builder.append(" ");
+        IOFileManager.writeFile(filename, this::writeCode);
+    }
+
+    public String formatCode() {
+        return IOFileManager.render(this::writeCode);
+    }
+
+    /**
+     * Пишет постфиксную нотацию в поток: токены через пробел в одну строку.
+     * Токены формируются по мере записи, прямо из узлов дерева
+     */
+    public void writeCode(Writer out) throws IOException {
+        for (int node = 0; node < this.getTokenCount(); node++) {
+            if (node > 0) {
+                out.write(' ');
+            }
+            switch (tree.kind(node)) {
+                case IDENTIFIER:
+                    out.write("<id,");
+                    out.write(Integer.toString(tree.symbolId(node)));
+                    out.write('>');
+                    break;
+                case INT_TO_FLOAT:
+                    out.write("<i2f>");
+                    break;
+                case NEGATE:
+                    out.write("<-u>");
+                    break;
+                default:
+                    out.write('<');
+                    out.write(tree.label(node));
+                    out.write('>');
             }
         }
-        builder.append("\n");
-        IOFileManager.createFile(filename, builder.toString());
+        out.write('\n');
     }
 
     /**
      * Сохраняет таблицу символов в файл
      */
     public void saveSymbolsToFile(String filename) {
-        StringBuilder builder = new StringBuilder();
-        for (Map.Entry<String, Integer> entry : symbolTable.entrySet()) {
-            String varName = entry.getKey();
-            Integer id = entry.getValue();
-            VariableType varType = variableTypes.get(varName);
-            
-            String typeName = varType == VariableType.FLOAT ? "float" : "integer";
-            builder.append(String.format("<id,%d> - %s, %s\n", id, varName, typeName));
+        IOFileManager.writeFile(filename, this::writeSymbols);
+    }
+
+    public String formatSymbols() {
+        return IOFileManager.render(this::writeSymbols);
+    }
+
+    /**
+     * Пишет таблицу символов в поток построчно: «<id,N> - имя, тип»
+     */
+    public void writeSymbols(Writer out) throws IOException {
+        for (int id = 1; id <= symbolTable.size(); id++) {
+            out.write("<id,");
+            out.write(Integer.toString(id));
+            out.write("> - ");
+            symbolTable.writeName(id, out);
+            out.write(symbolTable.type(id) == VariableType.FLOAT ? ", float\n" : ", integer\n");
         }
-        IOFileManager.createFile(filename, builder.toString());
     }
 }
@@ -1,44 +1,54 @@
 package ru.strakhov.devs.generator;
 
+import ru.strakhov.devs.analyzer.CompilationUnit;
 import ru.strakhov.devs.analyzer.LexicalAnalyzer;
 import ru.strakhov.devs.analyzer.SemanticAnalyzer;
-import ru.strakhov.devs.lexical_object.entity.LexcialObject;
+import ru.strakhov.devs.lexical_object.entity.SymbolTable;
 import ru.strakhov.devs.lexical_object.entity.VariableType;
-import ru.strakhov.devs.lexical_object.type.IdentifierType;
-import ru.strakhov.devs.lexical_object.type.NumberType;
 import ru.strakhov.devs.manager.IOFileManager;
+import ru.strakhov.devs.parser.syntax.NodeKind;
 import ru.strakhov.devs.parser.syntax.SyntaxParser;
+import ru.strakhov.devs.parser.syntax.SyntaxTree;
 import ru.strakhov.devs.parser.syntax.SyntaxTreeNode;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class ThreeAddressCodeGenerator {
+    // Инструкция — четыре числа: код операции, приемник и два операнда
+    private static final int INSTRUCTION_WIDTH = 4;
+    private static final int ADD = 0;
+    private static final int SUB = 1;
+    private static final int MUL = 2;
+    private static final int DIV = 3;
+    private static final int I2F = 4;
+    private static final String[] OPERATION_NAMES = {"add", "sub", "mul", "div", "i2f"};
+    // Операнд: неотрицательный — номер символа, отрицательный — ~номер константы
+    private static final int NO_OPERAND = Integer.MIN_VALUE;
+
     private final LexicalAnalyzer lexicalAnalyzer;
-    private final List<String> codeLines = new ArrayList<>();
-    private final Map<String, Integer> extendedSymbolTable = new LinkedHashMap<>(); // Расширенная таблица символов
-    private final Map<String, VariableType> extendedVariableTypes = new LinkedHashMap<>();
+    private SymbolTable extendedSymbolTable = new SymbolTable(); // Расширенная таблица символов: переменные и временные
+    private int maxVariableId;
+    // До распределения приемники и временные-операнды — это maxVariableId + 1 + номер виртуальной временной
+    private int[] code = new int[16 * INSTRUCTION_WIDTH];
+    private int instructionCount;
+    private final List<VariableType> virtualTempTypes = new ArrayList<>();
+    private final List<String> constants = new ArrayList<>();
+    private final Map<String, Integer> constantIndexes = new HashMap<>();
+    private final Map<ValueKey, Integer> valueNumbers = new HashMap<>(); // Уже вычисленные значения: ключ -> временная
+    private int resultOperand = NO_OPERAND; // Операнд с результатом всего выражения
     private int tempVarCounter = 1;
-    private int nextSymbolId;
 
     public ThreeAddressCodeGenerator(LexicalAnalyzer lexicalAnalyzer) {
         this.lexicalAnalyzer = lexicalAnalyzer;
-        // Инициализируем расширенную таблицу символов из лексического анализатора
-        Map<String, Integer> originalSymbolTable = lexicalAnalyzer.getSymbolTable();
-        Map<String, VariableType> originalVariableTypes = lexicalAnalyzer.getVariableTypes();
-        
-        for (Map.Entry<String, Integer> entry : originalSymbolTable.entrySet()) {
-            extendedSymbolTable.put(entry.getKey(), entry.getValue());
-            extendedVariableTypes.put(entry.getKey(), originalVariableTypes.get(entry.getKey()));
-        }
-        
-        // Находим максимальный ID для продолжения нумерации
-        nextSymbolId = originalSymbolTable.values().stream()
-                .mapToInt(Integer::intValue)
-                .max()
-                .orElse(0) + 1;
     }
 
     /**
@@ -46,254 +56,395 @@ public class ThreeAddressCodeGenerator {
      */
     public void generate(SyntaxTreeNode root) {
         if (root == null) return;
-        
-        // Сначала выполняем семантический анализ для получения дерева с Int2Float
+        generate(SyntaxTree.of(root));
+    }
+
+    public void generate(SyntaxTree tree) {
+        // Сначала выполняем семантический анализ для получения дерева с Int2Float и упрощаем его
         SemanticAnalyzer semanticAnalyzer = new SemanticAnalyzer(lexicalAnalyzer);
-        SyntaxTreeNode modifiedTree = semanticAnalyzer.analyze(root);
-        
-        // Генерируем код из модифицированного дерева
-        generateCode(modifiedTree);
+        SyntaxTree modifiedTree = semanticAnalyzer.optimize(semanticAnalyzer.analyze(tree));
+
+        generateOptimized(modifiedTree);
+    }
+
+    /**
+     * Генерирует трехадресный код по дереву единицы компиляции без повторного анализа.
+     * Единица должна быть построена тем же лексическим анализатором, что передан в конструктор
+     */
+    public void generate(CompilationUnit unit) {
+        generateOptimized(unit.getOptimizedTree());
+    }
+
+    private void generateOptimized(SyntaxTree optimizedTree) {
+        // Временные дописываются в копию таблицы лексического анализатора и получают следующие номера.
+        // Копия снимается здесь, а не в конструкторе: единица компиляции разбирает выражение
+        // на токены лениво, и до получения дерева таблица еще пуста
+        extendedSymbolTable = lexicalAnalyzer.getSymbols().snapshot();
+        // Номера в таблице плотные, начиная с 1
+        maxVariableId = extendedSymbolTable.size();
+        if (optimizedTree.size() == 0) return;
+
+        // Генерируем код над виртуальными временными, затем назначаем им реальные.
+        // Инструкции хранятся числами, строки формируются только при выводе
+        int result = generateCode(optimizedTree);
+        resultOperand = allocateTemporaries(result);
     }
 
     /**
-     * Рекурсивно генерирует трехадресный код из узла дерева
-     * @return имя переменной или константы, содержащей результат
+     * Генерирует трехадресный код из дерева обходом с явным стеком
+     * @return операнд, содержащий результат
      */
-    private String generateCode(SyntaxTreeNode node) {
-        if (node == null) return null;
-
-        String value = node.getValue();
-        
-        // Если это листовой узел (операнд)
-        if (node.getChildren().isEmpty()) {
-            LexcialObject token = node.getNode();
-            if (token == null) return null;
-
-            // Если это идентификатор
-            if (token.getType() instanceof IdentifierType) {
-                return formatIdentifier(token.getIdentifierId());
+    private int generateCode(SyntaxTree tree) {
+        int[] registerNeeds = computeRegisterNeeds(tree);
+
+        // Узел обрабатывается дважды: сначала в стек кладутся его потомки,
+        // затем, когда их результаты готовы, генерируется сама операция.
+        // Второе посещение кодируется в стеке как ~узел
+        int[] results = new int[tree.size()];
+        int[] stack = new int[tree.size()];
+        int depth = 0;
+        stack[depth++] = tree.root();
+
+        while (depth > 0) {
+            int entry = stack[--depth];
+            if (entry < 0) {
+                int node = ~entry;
+                results[node] = generateNode(tree, node, results);
+                continue;
             }
-            
-            // Если это число
-            if (token.getType() instanceof NumberType) {
-                return token.getValue();
+            if (tree.isLeaf(entry)) {
+                results[entry] = generateNode(tree, entry, results);
+                continue;
+            }
+
+            stack[depth++] = ~entry;
+            int left = tree.left(entry);
+            int right = tree.right(entry);
+            // Первым вычисляется операнд, которому нужно больше временных (порядок Сети — Ульмана):
+            // пока считается второй, занята только одна временная с результатом первого
+            if (right != SyntaxTree.NONE && registerNeeds[right] > registerNeeds[left]) {
+                stack[depth++] = left;
+                stack[depth++] = right;
+            } else {
+                if (right != SyntaxTree.NONE) {
+                    stack[depth++] = right;
+                }
+                stack[depth++] = left;
             }
-            
-            return null;
         }
+        return results[tree.root()];
+    }
 
-        // Если это узел Int2Float
-        if ("Int2Float".equals(value)) {
-            SyntaxTreeNode operand = node.getChildren().get(0);
-            String operandName = generateCode(operand);
-            
-            // Создаем временную переменную для результата конвертации
-            String tempVar = createTempVariable(VariableType.FLOAT);
-            String tempVarId = formatIdentifier(getSymbolId(tempVar));
-            
-            codeLines.add(String.format("i2f %s %s", tempVarId, formatOperand(operandName)));
-            return tempVar;
+    /**
+     * Генерирует код одного узла, операнды которого уже вычислены
+     * @return операнд, содержащий результат
+     */
+    private int generateNode(SyntaxTree tree, int node, int[] results) {
+        NodeKind kind = tree.kind(node);
+        switch (kind) {
+            case IDENTIFIER:
+                return tree.symbolId(node);
+            case CONSTANT:
+                return constantOperand(tree.label(node));
+            case INT_TO_FLOAT:
+                // Результат конвертации кладем во временную переменную
+                return emitInstruction(I2F, VariableType.FLOAT, results[tree.left(node)], NO_OPERAND);
+            case NEGATE:
+                // Для унарного минуса: sub result 0 operand. Целый 0 отличает его от вычитания
+                // из вещественного нуля исходного выражения (0.0): RegisterCompiler превращает
+                // такую инструкцию в отрицание, сохраняющее знак нуля
+                return emitInstruction(SUB, tree.type(node), constantOperand("0"), results[tree.left(node)]);
+            default:
+                // Тип результата бинарной операции: FLOAT, если хотя бы один операнд FLOAT
+                return emitInstruction(getOperationCode(kind), tree.type(node),
+                        results[tree.left(node)], results[tree.right(node)]);
         }
+    }
 
-        // Если это бинарная операция
-        if (isBinaryOperation(value)) {
-            SyntaxTreeNode left = node.getChildren().get(0);
-            SyntaxTreeNode right = node.getChildren().get(1);
-            
-            String leftOperand = generateCode(left);
-            String rightOperand = generateCode(right);
-            
-            // Определяем тип результата операции
-            VariableType resultType = determineResultType(left, right);
-            
-            // Создаем временную переменную для результата
-            String tempVar = createTempVariable(resultType);
-            String tempVarId = formatIdentifier(getSymbolId(tempVar));
-            
-            // Генерируем код операции
-            String opCode = getOperationCode(value);
-            codeLines.add(String.format("%s %s %s %s", 
-                opCode, tempVarId, 
-                formatOperand(leftOperand), 
-                formatOperand(rightOperand)));
-            
-            return tempVar;
+    /**
+     * Константы с одинаковой записью получают один операнд, чтобы совпадали ключи значений
+     */
+    private int constantOperand(String label) {
+        Integer index = constantIndexes.get(label);
+        if (index == null) {
+            index = constants.size();
+            constants.add(label);
+            constantIndexes.put(label, index);
         }
+        return ~index;
+    }
 
-        // Если это унарный минус
-        if ("-".equals(value) && node.getChildren().size() == 1) {
-            SyntaxTreeNode operand = node.getChildren().get(0);
-            String operandName = generateCode(operand);
-            
-            // Для унарного минуса: sub result 0 operand
-            VariableType resultType = getOperandType(operand);
-            String tempVar = createTempVariable(resultType);
-            String tempVarId = formatIdentifier(getSymbolId(tempVar));
-            
-            codeLines.add(String.format("sub %s 0 %s", tempVarId, formatOperand(operandName)));
-            return tempVar;
+    /**
+     * Добавляет инструкцию, если такое же значение еще не вычислено (нумерация значений).
+     * Присваиваний внутри выражения нет, поэтому одинаковые операция и операнды
+     * всегда дают одно и то же значение, и повторное подвыражение берется из его временной переменной.
+     * @return временная переменная с результатом
+     */
+    private int emitInstruction(int operation, VariableType resultType, int left, int right) {
+        ValueKey key = new ValueKey(operation, resultType, left, right);
+        Integer existing = valueNumbers.get(key);
+        if (existing != null) {
+            return existing;
         }
 
-        return null;
+        int tempVar = maxVariableId + 1 + virtualTempTypes.size();
+        virtualTempTypes.add(resultType);
+        if ((instructionCount + 1) * INSTRUCTION_WIDTH > code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        int pc = instructionCount++ * INSTRUCTION_WIDTH;
+        code[pc] = operation;
+        code[pc + 1] = tempVar;
+        code[pc + 2] = left;
+        code[pc + 3] = right;
+        valueNumbers.put(key, tempVar);
+        return tempVar;
     }
 
     /**
-     * Создает временную переменную с указанным типом
+     * Вычисляет числа Сети — Ульмана: сколько временных одновременно нужно для вычисления узла.
+     * Операнды-листья читаются напрямую и временных не требуют
      */
-    private String createTempVariable(VariableType type) {
-        String tempVarName = "#T" + tempVarCounter++;
-        extendedSymbolTable.put(tempVarName, nextSymbolId++);
-        extendedVariableTypes.put(tempVarName, type);
-        return tempVarName;
+    private int[] computeRegisterNeeds(SyntaxTree tree) {
+        int[] registerNeeds = new int[tree.size()];
+        // Потомки хранятся раньше родителя, поэтому хватает одного прохода по массиву
+        for (int node = 0; node < tree.size(); node++) {
+            if (tree.isLeaf(node)) continue;
+            int leftNeed = registerNeeds[tree.left(node)];
+            if (tree.right(node) == SyntaxTree.NONE) {
+                registerNeeds[node] = Math.max(1, leftNeed);
+            } else {
+                int rightNeed = registerNeeds[tree.right(node)];
+                registerNeeds[node] = Math.max(1, leftNeed == rightNeed ? leftNeed + 1 : Math.max(leftNeed, rightNeed));
+            }
+        }
+        return registerNeeds;
     }
 
     /**
-     * Получает ID символа из таблицы
+     * Распределяет виртуальные временные по реальным линейным сканированием:
+     * временная освобождается после последнего чтения и переиспользуется следующей
+     * инструкцией с результатом того же типа. Операнды читаются до записи результата,
+     * поэтому приемник может совпадать с освобожденным операндом.
+     * Номера виртуальных временных заменяются номерами реальных прямо в коде.
+     * @return операнд с результатом выражения
      */
-    private int getSymbolId(String varName) {
-        return extendedSymbolTable.get(varName);
+    private int allocateTemporaries(int result) {
+        int[] lastUse = new int[virtualTempTypes.size()];
+        for (int i = 0; i < instructionCount; i++) {
+            for (int j = 2; j < INSTRUCTION_WIDTH; j++) {
+                int operand = code[i * INSTRUCTION_WIDTH + j];
+                if (isVirtualTemp(operand)) {
+                    lastUse[operand - maxVariableId - 1] = i;
+                }
+            }
+        }
+        if (isVirtualTemp(result)) {
+            // Результат выражения живет до конца кода
+            lastUse[result - maxVariableId - 1] = Integer.MAX_VALUE;
+        }
+
+        int[] assigned = new int[virtualTempTypes.size()];
+        Map<VariableType, Deque<Integer>> freeTemps = new EnumMap<>(VariableType.class);
+        for (int i = 0; i < instructionCount; i++) {
+            int pc = i * INSTRUCTION_WIDTH;
+            int left = code[pc + 2];
+            for (int j = 2; j < INSTRUCTION_WIDTH; j++) {
+                int operand = code[pc + j];
+                if (!isVirtualTemp(operand)) continue;
+                int index = operand - maxVariableId - 1;
+                code[pc + j] = assigned[index];
+                // Одна и та же временная может быть обоими операндами — освобождаем один раз
+                boolean repeated = j > 2 && operand == left;
+                if (lastUse[index] == i && !repeated) {
+                    freeTemps.computeIfAbsent(virtualTempTypes.get(index), type -> new ArrayDeque<>())
+                            .push(assigned[index]);
+                }
+            }
+
+            VariableType type = virtualTempTypes.get(code[pc + 1] - maxVariableId - 1);
+            Deque<Integer> free = freeTemps.get(type);
+            int tempVar = free != null && !free.isEmpty() ? free.pop() : createTempVariable(type);
+            assigned[code[pc + 1] - maxVariableId - 1] = tempVar;
+            code[pc + 1] = tempVar;
+        }
+
+        return isVirtualTemp(result) ? assigned[result - maxVariableId - 1] : result;
+    }
+
+    private boolean isVirtualTemp(int operand) {
+        return operand > maxVariableId;
     }
 
     /**
-     * Форматирует операнд (константа или <id,N>)
+     * Ключ значения: для коммутативных add и mul операнды упорядочиваются,
+     * чтобы a+b и b+a получили один номер. Операнды читаются в типе результата, а одна
+     * переменная может входить в выражение то целой, то вещественной (a/2+a[f]),
+     * поэтому тип входит в ключ
      */
-    private String formatOperand(String operand) {
-        if (operand == null) return null;
-        
-        // Если это число (константа)
-        if (operand.matches("-?\\d+(\\.\\d+)?")) {
-            return operand;
+    private static final class ValueKey {
+        private final int operation;
+        private final VariableType type;
+        private final int left;
+        private final int right;
+
+        ValueKey(int operation, VariableType type, int left, int right) {
+            boolean swap = (operation == ADD || operation == MUL) && left > right;
+            this.operation = operation;
+            this.type = type;
+            this.left = swap ? right : left;
+            this.right = swap ? left : right;
         }
-        
-        // Если это переменная (включая временные)
-        if (extendedSymbolTable.containsKey(operand)) {
-            return formatIdentifier(extendedSymbolTable.get(operand));
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ValueKey)) return false;
+            ValueKey key = (ValueKey) other;
+            return operation == key.operation && type == key.type && left == key.left && right == key.right;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((operation * 31 + type.ordinal()) * 31 + left) * 31 + right;
         }
-        
-        return operand;
     }
 
     /**
-     * Форматирует идентификатор как <id,N>
+     * Создает временную переменную с указанным типом
+     * @return номер временной в расширенной таблице
      */
-    private String formatIdentifier(int id) {
-        return String.format("<id,%d>", id);
+    private int createTempVariable(VariableType type) {
+        return extendedSymbolTable.add("#T" + tempVarCounter++, -1, type);
+    }
+
+    /**
+     * Форматирует операнд: константа или <id,N>
+     */
+    private String formatOperand(int operand) {
+        return operand < 0 ? constants.get(~operand) : formatIdentifier(operand);
     }
 
     /**
      * Форматирует идентификатор как <id,N>
      */
-    private String formatIdentifier(Integer id) {
-        if (id == null) return null;
-        return formatIdentifier(id.intValue());
+    private String formatIdentifier(int id) {
+        return "<id," + id + ">";
     }
 
     /**
      * Определяет код операции
      */
-    private String getOperationCode(String operation) {
+    private int getOperationCode(NodeKind operation) {
         switch (operation) {
-            case "+": return "add";
-            case "-": return "sub";
-            case "*": return "mul";
-            case "/": return "div";
-            default: return operation;
+            case ADD: return ADD;
+            case SUBTRACT: return SUB;
+            case MULTIPLY: return MUL;
+            case DIVIDE: return DIV;
+            default: throw new IllegalArgumentException("Неизвестная операция: " + operation);
         }
     }
 
+    public int getInstructionCount() {
+        return instructionCount;
+    }
+
     /**
-     * Определяет тип результата операции
+     * Инструкции в текстовом виде; список создается заново при каждом вызове
      */
-    private VariableType determineResultType(SyntaxTreeNode left, SyntaxTreeNode right) {
-        VariableType leftType = getOperandType(left);
-        VariableType rightType = getOperandType(right);
-        
-        // Если хотя бы один операнд FLOAT, результат FLOAT
-        if (leftType == VariableType.FLOAT || rightType == VariableType.FLOAT) {
-            return VariableType.FLOAT;
+    public List<String> getCodeLines() {
+        List<String> codeLines = new ArrayList<>(instructionCount);
+        for (int i = 0; i < instructionCount; i++) {
+            int instruction = i;
+            codeLines.add(IOFileManager.render(out -> this.writeInstruction(instruction, out)));
         }
-        
-        return VariableType.INTEGER;
+        return codeLines;
     }
 
     /**
-     * Определяет тип операнда
+     * Возвращает операнд (<id,N> или константу), в котором лежит результат выражения
      */
-    private VariableType getOperandType(SyntaxTreeNode node) {
-        if (node == null) return VariableType.INTEGER;
-
-        // Если это узел Int2Float, результат всегда float
-        if ("Int2Float".equals(node.getValue())) {
-            return VariableType.FLOAT;
-        }
-
-        // Если это листовой узел
-        if (node.getChildren().isEmpty()) {
-            LexcialObject token = node.getNode();
-            if (token == null) return VariableType.INTEGER;
-
-            // Если это идентификатор
-            if (token.getType() instanceof IdentifierType) {
-                VariableType varType = token.getVariableType();
-                return varType != null ? varType : VariableType.INTEGER;
-            }
-
-            // Если это число
-            if (token.getType() instanceof NumberType) {
-                String value = token.getValue();
-                if (value.contains(".") || value.contains("e") || value.contains("E")) {
-                    return VariableType.FLOAT;
-                }
-                return VariableType.INTEGER;
-            }
-        }
+    public String getResultOperand() {
+        return resultOperand != NO_OPERAND ? formatOperand(resultOperand) : null;
+    }
 
-        // Для операций результат зависит от типов операндов
-        if (!node.getChildren().isEmpty()) {
-            for (SyntaxTreeNode child : node.getChildren()) {
-                VariableType childType = getOperandType(child);
-                if (childType == VariableType.FLOAT) {
-                    return VariableType.FLOAT;
-                }
-            }
-            return VariableType.INTEGER;
+    /**
+     * Возвращает типы всех символов, включая временные, по их идентификатору
+     */
+    public Map<Integer, VariableType> getIdentifierTypes() {
+        Map<Integer, VariableType> identifierTypes = new HashMap<>();
+        for (int id = 1; id <= extendedSymbolTable.size(); id++) {
+            identifierTypes.put(id, extendedSymbolTable.type(id));
         }
-
-        return VariableType.INTEGER;
+        return identifierTypes;
     }
 
     /**
-     * Проверяет, является ли значение бинарной операцией
+     * Возвращает наибольший идентификатор переменной из исходного выражения (без временных)
      */
-    private boolean isBinaryOperation(String value) {
-        return "+".equals(value) || "-".equals(value) || 
-               "*".equals(value) || "/".equals(value);
+    public int getMaxVariableId() {
+        return maxVariableId;
     }
 
     /**
      * Сохраняет трехадресный код в файл
      */
     public void saveToFile(String filename) {
-        StringBuilder builder = new StringBuilder();
-        for (String line : codeLines) {
-            builder.append(line).append("\n");
+        IOFileManager.writeFile(filename, this::writeCode);
+    }
+
+    public String formatCode() {
+        return IOFileManager.render(this::writeCode);
+    }
+
+    /**
+     * Пишет трехадресный код в поток: по одной инструкции в строке.
+     * Строки формируются по мере записи из числового представления инструкций
+     */
+    public void writeCode(Writer out) throws IOException {
+        for (int i = 0; i < instructionCount; i++) {
+            this.writeInstruction(i, out);
+            out.write('\n');
+        }
+    }
+
+    private void writeInstruction(int instruction, Writer out) throws IOException {
+        int pc = instruction * INSTRUCTION_WIDTH;
+        out.write(OPERATION_NAMES[code[pc]]);
+        for (int j = 1; j < INSTRUCTION_WIDTH; j++) {
+            int operand = code[pc + j];
+            if (operand == NO_OPERAND) continue;
+            out.write(' ');
+            if (operand < 0) {
+                out.write(constants.get(~operand));
+            } else {
+                out.write("<id,");
+                out.write(Integer.toString(operand));
+                out.write('>');
+            }
         }
-        IOFileManager.createFile(filename, builder.toString());
     }
 
     /**
      * Сохраняет расширенную таблицу символов в файл
      */
     public void saveSymbolsToFile(String filename) {
-        StringBuilder builder = new StringBuilder();
-        for (Map.Entry<String, Integer> entry : extendedSymbolTable.entrySet()) {
-            String varName = entry.getKey();
-            Integer id = entry.getValue();
-            VariableType varType = extendedVariableTypes.get(varName);
-            
-            String typeName = varType == VariableType.FLOAT ? "float" : "integer";
-            builder.append(String.format("<id,%d> - %s, %s\n", id, varName, typeName));
+        IOFileManager.writeFile(filename, this::writeSymbols);
+    }
+
+    public String formatSymbols() {
+        return IOFileManager.render(this::writeSymbols);
+    }
+
+    /**
+     * Пишет расширенную таблицу символов в поток построчно: «<id,N> - имя, тип»
+     */
+    public void writeSymbols(Writer out) throws IOException {
+        for (int id = 1; id <= extendedSymbolTable.size(); id++) {
+            out.write("<id,");
+            out.write(Integer.toString(id));
+            out.write("> - ");
+            extendedSymbolTable.writeName(id, out);
+            out.write(extendedSymbolTable.type(id) == VariableType.FLOAT ? ", float\n" : ", integer\n");
         }
-        IOFileManager.createFile(filename, builder.toString());
     }
 }
@@ -0,0 +1,133 @@
+package ru.strakhov.devs.interpreter;
+
+import ru.strakhov.devs.generator.PostfixCodeGenerator;
+import ru.strakhov.devs.lexical_object.entity.VariableType;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Компилирует вывод {@link PostfixCodeGenerator} ({@code <id,1> <3> <i2f> <+> <-u>})
+ * в {@link PostfixProgram}. Типы операндов отслеживаются на этапе компиляции,
+ * поэтому во время выполнения каждая операция уже знает, целая она или вещественная.
+ * <p>
+ * Переменная загружается в типе своего вхождения из семантического дерева, а не в итоговом
+ * типе из таблицы символов: в {@code a/2+a[f]} первое {@code a} целое, и деление тоже целое.
+ */
+public class PostfixCompiler {
+    private int[] code = new int[64];
+    private int size;
+    // Типы значений на стеке во время компиляции
+    private VariableType[] typeStack = new VariableType[16];
+    private int depth;
+    private int maxDepth;
+
+    public static PostfixProgram compile(PostfixCodeGenerator generator) {
+        return compile(generator.getPostfixTokens(), generator.getOccurrenceTypes());
+    }
+
+    /**
+     * @param postfixTokens   токены постфиксной записи
+     * @param occurrenceTypes типы вхождений идентификаторов в порядке записи
+     */
+    public static PostfixProgram compile(List<String> postfixTokens, List<VariableType> occurrenceTypes) {
+        return new PostfixCompiler().compileTokens(postfixTokens, occurrenceTypes);
+    }
+
+    private PostfixProgram compileTokens(List<String> postfixTokens, List<VariableType> occurrenceTypes) {
+        int maxIdentifierId = 0;
+        int occurrence = 0;
+        for (String token : postfixTokens) {
+            if (token.length() < 3 || token.charAt(0) != '<' || token.charAt(token.length() - 1) != '>') {
+                throw new IllegalArgumentException("Некорректный токен постфиксной записи: " + token);
+            }
+            String value = token.substring(1, token.length() - 1);
+            switch (value) {
+                case "+": this.emitBinary(PostfixProgram.ADD_INTEGER, PostfixProgram.ADD_FLOAT); break;
+                case "-": this.emitBinary(PostfixProgram.SUB_INTEGER, PostfixProgram.SUB_FLOAT); break;
+                case "*": this.emitBinary(PostfixProgram.MUL_INTEGER, PostfixProgram.MUL_FLOAT); break;
+                case "/": this.emitBinary(PostfixProgram.DIV_INTEGER, PostfixProgram.DIV_FLOAT); break;
+                case "-u":
+                    this.require(1, token);
+                    this.emit(typeStack[depth - 1] == VariableType.FLOAT
+                            ? PostfixProgram.NEG_FLOAT : PostfixProgram.NEG_INTEGER);
+                    break;
+                case "i2f":
+                    this.require(1, token);
+                    if (typeStack[depth - 1] == VariableType.INTEGER) {
+                        this.emit(PostfixProgram.INT_TO_FLOAT);
+                        typeStack[depth - 1] = VariableType.FLOAT;
+                    }
+                    break;
+                default:
+                    if (value.startsWith("id,")) {
+                        int id = Integer.parseInt(value.substring(3));
+                        if (occurrence == occurrenceTypes.size()) {
+                            throw new IllegalArgumentException("Нет типа для вхождения идентификатора: " + token);
+                        }
+                        VariableType type = occurrenceTypes.get(occurrence++);
+                        this.emit(type == VariableType.FLOAT ? PostfixProgram.LOAD_FLOAT : PostfixProgram.LOAD_INTEGER);
+                        this.emit(id);
+                        this.push(type);
+                        maxIdentifierId = Math.max(maxIdentifierId, id);
+                    } else {
+                        this.emitConstant(value);
+                    }
+            }
+        }
+        if (depth != 1) {
+            throw new IllegalArgumentException("Постфиксная запись должна оставлять на стеке одно значение, осталось: " + depth);
+        }
+        return new PostfixProgram(Arrays.copyOf(code, size), maxDepth, typeStack[0], maxIdentifierId);
+    }
+
+    private void emitConstant(String value) {
+        boolean isFloat = value.indexOf('.') >= 0 || value.indexOf('e') >= 0 || value.indexOf('E') >= 0;
+        long bits;
+        try {
+            bits = isFloat ? Double.doubleToRawLongBits(Double.parseDouble(value)) : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректная константа постфиксной записи: " + value, e);
+        }
+        this.emit(isFloat ? PostfixProgram.PUSH_FLOAT : PostfixProgram.PUSH_INTEGER);
+        this.emit((int) (bits >>> 32));
+        this.emit((int) bits);
+        this.push(isFloat ? VariableType.FLOAT : VariableType.INTEGER);
+    }
+
+    private void emitBinary(int integerOpcode, int floatOpcode) {
+        this.require(2, "binary operator");
+        VariableType left = typeStack[depth - 2];
+        VariableType right = typeStack[depth - 1];
+        // Семантический анализ уже выровнял типы; смешанные операнды бывают только
+        // в записи, собранной не генератором
+        if (left != right) {
+            this.emit(left == VariableType.INTEGER ? PostfixProgram.INT_TO_FLOAT_UNDER : PostfixProgram.INT_TO_FLOAT);
+        }
+        boolean isFloat = left == VariableType.FLOAT || right == VariableType.FLOAT;
+        this.emit(isFloat ? floatOpcode : integerOpcode);
+        depth--;
+        typeStack[depth - 1] = isFloat ? VariableType.FLOAT : VariableType.INTEGER;
+    }
+
+    private void require(int operands, String token) {
+        if (depth < operands) {
+            throw new IllegalArgumentException("Недостаточно операндов для " + token);
+        }
+    }
+
+    private void push(VariableType type) {
+        if (depth == typeStack.length) {
+            typeStack = Arrays.copyOf(typeStack, depth * 2);
+        }
+        typeStack[depth++] = type;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    private void emit(int value) {
+        if (size == code.length) {
+            code = Arrays.copyOf(code, size * 2);
+        }
+        code[size++] = value;
+    }
+}
@@ -0,0 +1,109 @@
+package ru.strakhov.devs.interpreter;
+
+import ru.strakhov.devs.lexical_object.entity.VariableType;
+
+/**
+ * Стековая машина для {@link PostfixProgram}. Стек операндов — один массив long:
+ * целые значения хранятся как есть, вещественные — битами double, так что
+ * вычисление не упаковывает значения и не выделяет память.
+ * Экземпляр переиспользует свой стек и не потокобезопасен: по одному на поток.
+ */
+public class PostfixInterpreter {
+    private long[] stack = new long[16];
+
+    /**
+     * Вычисляет программу; целый результат приводится к double
+     */
+    public double evaluate(PostfixProgram program, VariableBindings bindings) {
+        long result = this.execute(program, bindings);
+        return program.getResultType() == VariableType.FLOAT ? Double.longBitsToDouble(result) : result;
+    }
+
+    /**
+     * Вычисляет программу с целым результатом
+     */
+    public long evaluateInteger(PostfixProgram program, VariableBindings bindings) {
+        if (program.getResultType() != VariableType.INTEGER) {
+            throw new IllegalStateException("Результат программы вещественный");
+        }
+        return this.execute(program, bindings);
+    }
+
+    private long execute(PostfixProgram program, VariableBindings bindings) {
+        if (stack.length < program.getMaxStack()) {
+            stack = new long[program.getMaxStack()];
+        }
+        long[] stack = this.stack;
+        int[] code = program.getCode();
+        long[] integerValues = bindings.integerValues();
+        double[] floatValues = bindings.floatValues();
+        int sp = 0;
+        int pc = 0;
+        while (pc < code.length) {
+            switch (code[pc++]) {
+                case PostfixProgram.LOAD_INTEGER:
+                    stack[sp++] = integerValues[code[pc++]];
+                    break;
+                case PostfixProgram.LOAD_FLOAT:
+                    stack[sp++] = Double.doubleToRawLongBits(floatValues[code[pc++]]);
+                    break;
+                case PostfixProgram.PUSH_INTEGER:
+                case PostfixProgram.PUSH_FLOAT:
+                    stack[sp++] = ((long) code[pc] << 32) | (code[pc + 1] & 0xFFFFFFFFL);
+                    pc += 2;
+                    break;
+                case PostfixProgram.ADD_INTEGER:
+                    sp--;
+                    stack[sp - 1] += stack[sp];
+                    break;
+                case PostfixProgram.SUB_INTEGER:
+                    sp--;
+                    stack[sp - 1] -= stack[sp];
+                    break;
+                case PostfixProgram.MUL_INTEGER:
+                    sp--;
+                    stack[sp - 1] *= stack[sp];
+                    break;
+                case PostfixProgram.DIV_INTEGER:
+                    sp--;
+                    stack[sp - 1] /= stack[sp];
+                    break;
+                case PostfixProgram.NEG_INTEGER:
+                    stack[sp - 1] = -stack[sp - 1];
+                    break;
+                case PostfixProgram.ADD_FLOAT:
+                    sp--;
+                    stack[sp - 1] = Double.doubleToRawLongBits(
+                            Double.longBitsToDouble(stack[sp - 1]) + Double.longBitsToDouble(stack[sp]));
+                    break;
+                case PostfixProgram.SUB_FLOAT:
+                    sp--;
+                    stack[sp - 1] = Double.doubleToRawLongBits(
+                            Double.longBitsToDouble(stack[sp - 1]) - Double.longBitsToDouble(stack[sp]));
+                    break;
+                case PostfixProgram.MUL_FLOAT:
+                    sp--;
+                    stack[sp - 1] = Double.doubleToRawLongBits(
+                            Double.longBitsToDouble(stack[sp - 1]) * Double.longBitsToDouble(stack[sp]));
+                    break;
+                case PostfixProgram.DIV_FLOAT:
+                    sp--;
+                    stack[sp - 1] = Double.doubleToRawLongBits(
+                            Double.longBitsToDouble(stack[sp - 1]) / Double.longBitsToDouble(stack[sp]));
+                    break;
+                case PostfixProgram.NEG_FLOAT:
+                    stack[sp - 1] = Double.doubleToRawLongBits(-Double.longBitsToDouble(stack[sp - 1]));
+                    break;
+                case PostfixProgram.INT_TO_FLOAT:
+                    stack[sp - 1] = Double.doubleToRawLongBits((double) stack[sp - 1]);
+                    break;
+                case PostfixProgram.INT_TO_FLOAT_UNDER:
+                    stack[sp - 2] = Double.doubleToRawLongBits((double) stack[sp - 2]);
+                    break;
+                default:
+                    throw new IllegalStateException("Неизвестный опкод " + code[pc - 1] + " в позиции " + (pc - 1));
+            }
+        }
+        return stack[0];
+    }
+}
@@ -0,0 +1,66 @@
+package ru.strakhov.devs.interpreter;
+
+import ru.strakhov.devs.lexical_object.entity.VariableType;
+
+/**
+ * Скомпилированная постфиксная запись: плоский массив опкодов, операнды которых
+ * (идентификатор переменной или константа) записаны прямо в массив следом за опкодом.
+ * Программа неизменяема и может выполняться из нескольких потоков одновременно,
+ * каждый — своим {@link PostfixInterpreter}.
+ */
+public class PostfixProgram {
+    // Загрузка значений: за опкодом следует идентификатор переменной
+    public static final int LOAD_INTEGER = 0;
+    public static final int LOAD_FLOAT = 1;
+    // Константы: за опкодом следуют старшие и младшие 32 бита значения (для float — биты double)
+    public static final int PUSH_INTEGER = 2;
+    public static final int PUSH_FLOAT = 3;
+    public static final int ADD_INTEGER = 4;
+    public static final int SUB_INTEGER = 5;
+    public static final int MUL_INTEGER = 6;
+    public static final int DIV_INTEGER = 7;
+    public static final int NEG_INTEGER = 8;
+    public static final int ADD_FLOAT = 9;
+    public static final int SUB_FLOAT = 10;
+    public static final int MUL_FLOAT = 11;
+    public static final int DIV_FLOAT = 12;
+    public static final int NEG_FLOAT = 13;
+    // Преобразование int -> float вершины стека и элемента под вершиной
+    public static final int INT_TO_FLOAT = 14;
+    public static final int INT_TO_FLOAT_UNDER = 15;
+
+    private final int[] code;
+    private final int maxStack;
+    private final VariableType resultType;
+    private final int maxIdentifierId;
+
+    PostfixProgram(int[] code, int maxStack, VariableType resultType, int maxIdentifierId) {
+        this.code = code;
+        this.maxStack = maxStack;
+        this.resultType = resultType;
+        this.maxIdentifierId = maxIdentifierId;
+    }
+
+    int[] getCode() {
+        return code;
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public VariableType getResultType() {
+        return resultType;
+    }
+
+    public int getMaxIdentifierId() {
+        return maxIdentifierId;
+    }
+
+    /**
+     * Создает таблицу значений, достаточную для всех переменных программы
+     */
+    public VariableBindings newBindings() {
+        return new VariableBindings(maxIdentifierId);
+    }
+}
@@ -0,0 +1,174 @@
+package ru.strakhov.devs.interpreter;
+
+import ru.strakhov.devs.generator.ThreeAddressCodeGenerator;
+import ru.strakhov.devs.lexical_object.entity.VariableType;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Компилирует вывод {@link ThreeAddressCodeGenerator} ({@code add <id,5> <id,1> 3})
+ * в {@link RegisterProgram}. Целая или вещественная версия операции выбирается
+ * при компиляции по типу приемника из расширенной таблицы символов.
+ * <p>
+ * Входная переменная доступна в обоих регистровых файлах ({@link VariableBindings}
+ * хранит оба представления), поэтому операция читает ее в своем типе без преобразований.
+ * <p>
+ * Унарный минус генератор записывает как {@code sub d 0 x}. В вещественной операции
+ * ноль из исходного выражения всегда записан как {@code 0.0}, поэтому вычитание из целого
+ * {@code 0} компилируется в настоящее отрицание: иначе -0.0 превратился бы в +0.0,
+ * и знак бесконечности после деления разошелся бы с остальными бэкендами.
+ */
+public class RegisterCompiler {
+    // Уменьшаемое, которым генератор записывает унарный минус
+    private static final String NEGATION_MINUEND = "0";
+
+    private final Map<Integer, VariableType> identifierTypes;
+    private final int maxVariableId;
+    private final int symbolRegisterCount;
+    private final Map<String, Integer> constantRegisters = new HashMap<>();
+    private long[] integerRegisters;
+    private double[] floatRegisters;
+    private int registerCount;
+
+    private RegisterCompiler(Map<Integer, VariableType> identifierTypes, int maxVariableId) {
+        this.identifierTypes = identifierTypes;
+        this.maxVariableId = maxVariableId;
+        int maxId = maxVariableId;
+        for (int id : identifierTypes.keySet()) {
+            maxId = Math.max(maxId, id);
+        }
+        this.symbolRegisterCount = maxId + 1;
+        this.registerCount = symbolRegisterCount;
+        this.integerRegisters = new long[registerCount + 8];
+        this.floatRegisters = new double[registerCount + 8];
+    }
+
+    public static RegisterProgram compile(ThreeAddressCodeGenerator generator) {
+        return compile(generator.getCodeLines(), generator.getResultOperand(),
+                generator.getIdentifierTypes(), generator.getMaxVariableId());
+    }
+
+    /**
+     * @param codeLines       инструкции трехадресного кода
+     * @param resultOperand   операнд с результатом выражения
+     * @param identifierTypes типы всех символов (включая временные) по идентификатору
+     * @param maxVariableId   наибольший идентификатор входной переменной; больше — временные
+     */
+    public static RegisterProgram compile(List<String> codeLines, String resultOperand,
+                                          Map<Integer, VariableType> identifierTypes, int maxVariableId) {
+        return new RegisterCompiler(identifierTypes, maxVariableId).compileLines(codeLines, resultOperand);
+    }
+
+    private RegisterProgram compileLines(List<String> codeLines, String resultOperand) {
+        int[] code = new int[codeLines.size() * RegisterProgram.INSTRUCTION_WIDTH];
+        int pc = 0;
+        for (String line : codeLines) {
+            String[] parts = line.split(" ");
+            if (parts.length < 3) {
+                throw new IllegalArgumentException("Некорректная инструкция: " + line);
+            }
+            int destination = this.parseIdentifier(parts[1], line);
+            VariableType destinationType = identifierTypes.getOrDefault(destination, VariableType.INTEGER);
+
+            if (parts[0].equals("i2f")) {
+                code[pc] = RegisterProgram.INT_TO_FLOAT;
+                code[pc + 1] = destination;
+                code[pc + 2] = this.operandRegister(parts[2], VariableType.INTEGER, line);
+            } else {
+                if (parts.length != 4) {
+                    throw new IllegalArgumentException("Некорректная инструкция: " + line);
+                }
+                boolean isFloat = destinationType == VariableType.FLOAT;
+                if (isFloat && parts[0].equals("sub") && parts[2].equals(NEGATION_MINUEND)) {
+                    code[pc] = RegisterProgram.NEG_FLOAT;
+                    code[pc + 1] = destination;
+                    code[pc + 2] = this.operandRegister(parts[3], destinationType, line);
+                } else {
+                    code[pc] = this.opcode(parts[0], isFloat, line);
+                    code[pc + 1] = destination;
+                    code[pc + 2] = this.operandRegister(parts[2], destinationType, line);
+                    code[pc + 3] = this.operandRegister(parts[3], destinationType, line);
+                }
+            }
+            pc += RegisterProgram.INSTRUCTION_WIDTH;
+        }
+
+        VariableType resultType = this.operandType(resultOperand);
+        int resultRegister = this.operandRegister(resultOperand, resultType, resultOperand);
+        return new RegisterProgram(code,
+                Arrays.copyOf(integerRegisters, registerCount),
+                Arrays.copyOf(floatRegisters, registerCount),
+                maxVariableId, resultRegister, resultType);
+    }
+
+    private int opcode(String operation, boolean isFloat, String line) {
+        switch (operation) {
+            case "add": return isFloat ? RegisterProgram.ADD_FLOAT : RegisterProgram.ADD_INTEGER;
+            case "sub": return isFloat ? RegisterProgram.SUB_FLOAT : RegisterProgram.SUB_INTEGER;
+            case "mul": return isFloat ? RegisterProgram.MUL_FLOAT : RegisterProgram.MUL_INTEGER;
+            case "div": return isFloat ? RegisterProgram.DIV_FLOAT : RegisterProgram.DIV_INTEGER;
+            default: throw new IllegalArgumentException("Неизвестная операция в инструкции: " + line);
+        }
+    }
+
+    private VariableType operandType(String operand) {
+        if (operand.startsWith("<")) {
+            return identifierTypes.getOrDefault(this.parseIdentifier(operand, operand), VariableType.INTEGER);
+        }
+        return isFloatLiteral(operand) ? VariableType.FLOAT : VariableType.INTEGER;
+    }
+
+    /**
+     * Возвращает регистр операнда, читаемого как значение типа type
+     */
+    private int operandRegister(String operand, VariableType type, String line) {
+        if (operand.startsWith("<")) {
+            int id = this.parseIdentifier(operand, line);
+            // Временная переменная существует только в регистровом файле своего типа
+            if (id > maxVariableId && identifierTypes.getOrDefault(id, VariableType.INTEGER) != type) {
+                throw new IllegalArgumentException("Тип временной переменной не совпадает с типом операции: " + line);
+            }
+            return id;
+        }
+        return this.constantRegister(operand, type, line);
+    }
+
+    private int constantRegister(String literal, VariableType type, String line) {
+        String key = type + ":" + literal;
+        Integer register = constantRegisters.get(key);
+        if (register != null) {
+            return register;
+        }
+        if (registerCount == integerRegisters.length) {
+            integerRegisters = Arrays.copyOf(integerRegisters, registerCount * 2);
+            floatRegisters = Arrays.copyOf(floatRegisters, registerCount * 2);
+        }
+        try {
+            if (type == VariableType.FLOAT) {
+                floatRegisters[registerCount] = Double.parseDouble(literal);
+            } else if (isFloatLiteral(literal)) {
+                throw new IllegalArgumentException("Вещественная константа в целой операции: " + line);
+            } else {
+                integerRegisters[registerCount] = Long.parseLong(literal);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректная константа в инструкции: " + line, e);
+        }
+        constantRegisters.put(key, registerCount);
+        return registerCount++;
+    }
+
+    private int parseIdentifier(String operand, String line) {
+        if (!operand.startsWith("<id,") || !operand.endsWith(">")) {
+            throw new IllegalArgumentException("Ожидался идентификатор <id,N>: " + line);
+        }
+        return Integer.parseInt(operand.substring(4, operand.length() - 1));
+    }
+
+    private static boolean isFloatLiteral(String literal) {
+        return literal.indexOf('.') >= 0 || literal.indexOf('e') >= 0 || literal.indexOf('E') >= 0;
+    }
+}
@@ -0,0 +1,69 @@
+package ru.strakhov.devs.interpreter;
+
+import ru.strakhov.devs.lexical_object.entity.VariableType;
+
+/**
+ * Регистровая машина для {@link RegisterProgram}: два типизированных регистровых
+ * файла (long[] и double[]) и цикл диспетчеризации по инструкциям фиксированной ширины.
+ * Экземпляр переиспользует свои регистры и не потокобезопасен: по одному на поток.
+ */
+public class RegisterMachine {
+    private long[] integerRegisters = new long[0];
+    private double[] floatRegisters = new double[0];
+    private RegisterProgram loadedProgram;
+
+    /**
+     * Вычисляет программу; целый результат приводится к double
+     */
+    public double evaluate(RegisterProgram program, VariableBindings bindings) {
+        this.execute(program, bindings);
+        int result = program.getResultRegister();
+        return program.getResultType() == VariableType.FLOAT ? floatRegisters[result] : integerRegisters[result];
+    }
+
+    /**
+     * Вычисляет программу с целым результатом
+     */
+    public long evaluateInteger(RegisterProgram program, VariableBindings bindings) {
+        if (program.getResultType() != VariableType.INTEGER) {
+            throw new IllegalStateException("Результат программы вещественный");
+        }
+        this.execute(program, bindings);
+        return integerRegisters[program.getResultRegister()];
+    }
+
+    private void execute(RegisterProgram program, VariableBindings bindings) {
+        if (program != loadedProgram) {
+            // Константы копируются один раз; регистры временных перезаписываются кодом
+            integerRegisters = program.getIntegerRegisters().clone();
+            floatRegisters = program.getFloatRegisters().clone();
+            loadedProgram = program;
+        }
+        long[] ints = integerRegisters;
+        double[] floats = floatRegisters;
+        int inputs = Math.min(program.getMaxVariableId() + 1, bindings.integerValues().length);
+        System.arraycopy(bindings.integerValues(), 0, ints, 0, inputs);
+        System.arraycopy(bindings.floatValues(), 0, floats, 0, inputs);
+
+        int[] code = program.getCode();
+        for (int pc = 0; pc < code.length; pc += RegisterProgram.INSTRUCTION_WIDTH) {
+            int destination = code[pc + 1];
+            int a = code[pc + 2];
+            int b = code[pc + 3];
+            switch (code[pc]) {
+                case RegisterProgram.ADD_INTEGER: ints[destination] = ints[a] + ints[b]; break;
+                case RegisterProgram.SUB_INTEGER: ints[destination] = ints[a] - ints[b]; break;
+                case RegisterProgram.MUL_INTEGER: ints[destination] = ints[a] * ints[b]; break;
+                case RegisterProgram.DIV_INTEGER: ints[destination] = ints[a] / ints[b]; break;
+                case RegisterProgram.ADD_FLOAT: floats[destination] = floats[a] + floats[b]; break;
+                case RegisterProgram.SUB_FLOAT: floats[destination] = floats[a] - floats[b]; break;
+                case RegisterProgram.MUL_FLOAT: floats[destination] = floats[a] * floats[b]; break;
+                case RegisterProgram.DIV_FLOAT: floats[destination] = floats[a] / floats[b]; break;
+                case RegisterProgram.INT_TO_FLOAT: floats[destination] = ints[a]; break;
+                case RegisterProgram.NEG_FLOAT: floats[destination] = -floats[a]; break;
+                default:
+                    throw new IllegalStateException("Неизвестный опкод " + code[pc] + " в позиции " + pc);
+            }
+        }
+    }
+}
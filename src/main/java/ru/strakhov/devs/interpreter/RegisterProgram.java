@@ -0,0 +1,88 @@
+package ru.strakhov.devs.interpreter;
+
+import ru.strakhov.devs.lexical_object.entity.VariableType;
+
+/**
+ * Скомпилированный трехадресный код. Инструкции фиксированной ширины
+ * (опкод, приемник, операнд 1, операнд 2) лежат в одном массиве int.
+ * Регистр {@code N} соответствует {@code <id,N>}; константы получают регистры
+ * после всех символов и заранее записаны в шаблоны регистровых файлов.
+ */
+public class RegisterProgram {
+    public static final int INSTRUCTION_WIDTH = 4;
+
+    public static final int ADD_INTEGER = 0;
+    public static final int SUB_INTEGER = 1;
+    public static final int MUL_INTEGER = 2;
+    public static final int DIV_INTEGER = 3;
+    public static final int ADD_FLOAT = 4;
+    public static final int SUB_FLOAT = 5;
+    public static final int MUL_FLOAT = 6;
+    public static final int DIV_FLOAT = 7;
+    // Приемник — вещественный регистр, источник — целый
+    public static final int INT_TO_FLOAT = 8;
+    // Вещественный унарный минус: у 0.0 - x другой знак нуля, -0.0 дал бы +0.0
+    public static final int NEG_FLOAT = 9;
+
+    private final int[] code;
+    private final long[] integerRegisters;
+    private final double[] floatRegisters;
+    private final int maxVariableId;
+    private final int resultRegister;
+    private final VariableType resultType;
+
+    RegisterProgram(int[] code, long[] integerRegisters, double[] floatRegisters,
+                    int maxVariableId, int resultRegister, VariableType resultType) {
+        this.code = code;
+        this.integerRegisters = integerRegisters;
+        this.floatRegisters = floatRegisters;
+        this.maxVariableId = maxVariableId;
+        this.resultRegister = resultRegister;
+        this.resultType = resultType;
+    }
+
+    int[] getCode() {
+        return code;
+    }
+
+    /**
+     * Начальное содержимое целого регистрового файла (с константами)
+     */
+    long[] getIntegerRegisters() {
+        return integerRegisters;
+    }
+
+    /**
+     * Начальное содержимое вещественного регистрового файла (с константами)
+     */
+    double[] getFloatRegisters() {
+        return floatRegisters;
+    }
+
+    public int getRegisterCount() {
+        return integerRegisters.length;
+    }
+
+    public int getInstructionCount() {
+        return code.length / INSTRUCTION_WIDTH;
+    }
+
+    public int getMaxVariableId() {
+        return maxVariableId;
+    }
+
+    int getResultRegister() {
+        return resultRegister;
+    }
+
+    public VariableType getResultType() {
+        return resultType;
+    }
+
+    /**
+     * Создает таблицу значений для всех входных переменных программы
+     */
+    public VariableBindings newBindings() {
+        return new VariableBindings(maxVariableId);
+    }
+}
@@ -0,0 +1,37 @@
+package ru.strakhov.devs.interpreter;
+
+/**
+ * Значения переменных, индексированные идентификатором из таблицы символов ({@code <id,N>}).
+ * Каждое значение хранится сразу в целом и вещественном виде, поэтому загрузка
+ * переменной в интерпретаторе — одно чтение из массива без преобразований и упаковки.
+ */
+public class VariableBindings {
+    private final long[] integerValues;
+    private final double[] floatValues;
+
+    /**
+     * @param maxIdentifierId наибольший идентификатор, который может встретиться в программе
+     */
+    public VariableBindings(int maxIdentifierId) {
+        this.integerValues = new long[maxIdentifierId + 1];
+        this.floatValues = new double[maxIdentifierId + 1];
+    }
+
+    public void setInteger(int identifierId, long value) {
+        integerValues[identifierId] = value;
+        floatValues[identifierId] = value;
+    }
+
+    public void setFloat(int identifierId, double value) {
+        floatValues[identifierId] = value;
+        integerValues[identifierId] = (long) value;
+    }
+
+    long[] integerValues() {
+        return integerValues;
+    }
+
+    double[] floatValues() {
+        return floatValues;
+    }
+}
@@ -1,18 +1,26 @@
 package ru.strakhov.devs.lexical_object.abstractions;
 
+import ru.strakhov.devs.lexical_object.entity.TokenKind;
+
 import java.util.regex.Pattern;
 
 public abstract class LexicalObjectType {
     protected final Pattern pattern;
+    protected final TokenKind kind;
 
-    protected LexicalObjectType(String regex) {
+    protected LexicalObjectType(String regex, TokenKind kind) {
         this.pattern = Pattern.compile(regex);
+        this.kind = kind;
     }
 
     public Pattern getPattern() {
         return pattern;
     }
 
+    public TokenKind getKind() {
+        return kind;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName();
@@ -10,6 +10,7 @@ public class LexcialObject {
     private String value;
     private int inLinePosition;
     private LexicalObjectType type;
+    private TokenKind kind; // Вид токена, берется из type при создании
     private VariableType variableType; // Тип переменной (только для идентификаторов)
     private Integer identifierId; // ID идентификатора в таблице символов
 
@@ -25,6 +26,10 @@ public class LexcialObject {
         return type;
     }
 
+    public TokenKind getKind() {
+        return kind;
+    }
+
     @Override
     public String toString() {
         return String.format("<%s> - %s", this.value, this.type);
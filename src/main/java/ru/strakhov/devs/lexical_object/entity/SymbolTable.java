@@ -0,0 +1,203 @@
+package ru.strakhov.devs.lexical_object.entity;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Таблица символов: имя -> плотный номер, начиная с 1, в порядке первого появления.
+ * Поиск — открытая адресация с линейным пробированием прямо по последовательности символов,
+ * поэтому для поиска не нужно выделять подстроку. Имя, тип и позиция первого появления
+ * хранятся в примитивных массивах по номеру.
+ */
+public class SymbolTable {
+    public static final int NOT_FOUND = 0;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final VariableType[] VARIABLE_TYPES = VariableType.values();
+
+    private int[] slots = new int[INITIAL_CAPACITY * 2]; // Номер символа или NOT_FOUND; размер — степень двойки
+    private int[] hashes = new int[INITIAL_CAPACITY + 1];
+    private int[] nameStarts = new int[INITIAL_CAPACITY + 1];
+    private int[] nameLengths = new int[INITIAL_CAPACITY + 1];
+    private int[] firstPositions = new int[INITIAL_CAPACITY + 1];
+    private byte[] types = new byte[INITIAL_CAPACITY + 1];
+    private char[] namePool = new char[INITIAL_CAPACITY * 8];
+    private int poolSize;
+    private int size;
+
+    /**
+     * @return номер символа или {@link #NOT_FOUND}
+     */
+    public int find(CharSequence name) {
+        return this.find(name, 0, name.length());
+    }
+
+    /**
+     * Ищет имя, заданное частью последовательности [start, end)
+     * @return номер символа или {@link #NOT_FOUND}
+     */
+    public int find(CharSequence text, int start, int end) {
+        int hash = hash(text, start, end);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot];
+            if (id == NOT_FOUND) return NOT_FOUND;
+            if (hashes[id] == hash && this.nameEquals(id, text, start, end)) return id;
+        }
+    }
+
+    public int add(CharSequence name, int position, VariableType type) {
+        return this.add(name, 0, name.length(), position, type);
+    }
+
+    /**
+     * Добавляет новое имя; имя не должно быть в таблице
+     * @return номер нового символа
+     */
+    public int add(CharSequence text, int start, int end, int position, VariableType type) {
+        int id = ++size;
+        if (id == types.length) {
+            int capacity = types.length * 2;
+            hashes = Arrays.copyOf(hashes, capacity);
+            nameStarts = Arrays.copyOf(nameStarts, capacity);
+            nameLengths = Arrays.copyOf(nameLengths, capacity);
+            firstPositions = Arrays.copyOf(firstPositions, capacity);
+            types = Arrays.copyOf(types, capacity);
+        }
+        int length = end - start;
+        if (poolSize + length > namePool.length) {
+            namePool = Arrays.copyOf(namePool, Math.max(namePool.length * 2, poolSize + length));
+        }
+        for (int i = 0; i < length; i++) {
+            namePool[poolSize + i] = text.charAt(start + i);
+        }
+        nameStarts[id] = poolSize;
+        nameLengths[id] = length;
+        poolSize += length;
+        hashes[id] = hash(text, start, end);
+        firstPositions[id] = position;
+        types[id] = (byte) type.ordinal();
+
+        // Заполненность не больше половины, чтобы цепочки пробирования оставались короткими
+        if (size * 2 > slots.length) {
+            this.rehash(slots.length * 2);
+        } else {
+            this.insertSlot(id);
+        }
+        return id;
+    }
+
+    /**
+     * Число символов; номера идут от 1 до size
+     */
+    public int size() {
+        return size;
+    }
+
+    public String name(int id) {
+        return new String(namePool, nameStarts[this.checkId(id)], nameLengths[id]);
+    }
+
+    /**
+     * Пишет имя символа в поток, не создавая строку
+     */
+    public void writeName(int id, Writer out) throws IOException {
+        out.write(namePool, nameStarts[this.checkId(id)], nameLengths[id]);
+    }
+
+    public VariableType type(int id) {
+        return VARIABLE_TYPES[types[this.checkId(id)]];
+    }
+
+    public void setType(int id, VariableType type) {
+        types[this.checkId(id)] = (byte) type.ordinal();
+    }
+
+    public int firstPosition(int id) {
+        return firstPositions[this.checkId(id)];
+    }
+
+    public void setFirstPosition(int id, int position) {
+        firstPositions[this.checkId(id)] = position;
+    }
+
+    /**
+     * Сдвигает позиции первого появления, начиная с fromPosition (после правки текста перед ними).
+     * Номера выдаются в порядке появления, поэтому сдвигаемые символы — это последние номера
+     */
+    public void shiftPositions(int fromPosition, int delta) {
+        for (int id = size; id >= 1 && firstPositions[id] >= fromPosition; id--) {
+            firstPositions[id] += delta;
+        }
+    }
+
+    /**
+     * Удаляет все символы; выделенная память сохраняется
+     */
+    public void clear() {
+        Arrays.fill(slots, NOT_FOUND);
+        size = 0;
+        poolSize = 0;
+    }
+
+    /**
+     * Независимая копия таблицы: копируются только примитивные массивы.
+     * Нужна тем, кто дописывает свои символы (например, временные переменные), не меняя исходную таблицу
+     */
+    public SymbolTable snapshot() {
+        SymbolTable copy = new SymbolTable();
+        copy.slots = slots.clone();
+        copy.hashes = hashes.clone();
+        copy.nameStarts = nameStarts.clone();
+        copy.nameLengths = nameLengths.clone();
+        copy.firstPositions = firstPositions.clone();
+        copy.types = types.clone();
+        copy.namePool = Arrays.copyOf(namePool, Math.max(poolSize, INITIAL_CAPACITY));
+        copy.poolSize = poolSize;
+        copy.size = size;
+        return copy;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int id = 1; id <= size; id++) {
+            this.insertSlot(id);
+        }
+    }
+
+    private void insertSlot(int id) {
+        int mask = slots.length - 1;
+        int slot = hashes[id] & mask;
+        while (slots[slot] != NOT_FOUND) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = id;
+    }
+
+    private boolean nameEquals(int id, CharSequence text, int start, int end) {
+        int length = nameLengths[id];
+        if (length != end - start) return false;
+        int offset = nameStarts[id];
+        for (int i = 0; i < length; i++) {
+            if (namePool[offset + i] != text.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    private int checkId(int id) {
+        if (id < 1 || id > size) {
+            throw new IndexOutOfBoundsException("id " + id + ", size " + size);
+        }
+        return id;
+    }
+
+    private static int hash(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        // Перемешиваем старшие биты: индекс слота берется из младших
+        return hash ^ (hash >>> 16);
+    }
+}
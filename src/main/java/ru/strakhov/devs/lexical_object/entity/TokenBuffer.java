@@ -0,0 +1,396 @@
+package ru.strakhov.devs.lexical_object.entity;
+
+import ru.strakhov.devs.factory.LexicalObjectsFactory;
+import ru.strakhov.devs.utils.TypeDetector;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Последовательность токенов в параллельных примитивных массивах (структура массивов).
+ * Токен — это индекс: вид, тип, позиция во входе, номер в таблице символов
+ * и значение числовой константы, разобранное один раз при лексическом анализе.
+ * Текст чисел и нераспознанных лексем хранится в общем пуле символов;
+ * текст операторов определяется видом токена, имена идентификаторов — таблицей символов.
+ * <p>
+ * Объекты {@link LexcialObject} создаются только по запросу через {@link #get(int)}.
+ */
+public class TokenBuffer {
+    /** Тип целой константы, не помещающейся в long: значение доступно только как текст */
+    private static final byte OUT_OF_RANGE = -1;
+    private static final byte NO_TYPE = -2;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final TokenKind[] KINDS = TokenKind.values();
+    private static final VariableType[] VARIABLE_TYPES = VariableType.values();
+    private static final String[] OPERATOR_TEXT = new String[KINDS.length];
+    static {
+        OPERATOR_TEXT[TokenKind.OPEN_BRACKET.ordinal()] = "(";
+        OPERATOR_TEXT[TokenKind.CLOSE_BRACKET.ordinal()] = ")";
+        OPERATOR_TEXT[TokenKind.PLUS.ordinal()] = "+";
+        OPERATOR_TEXT[TokenKind.MINUS.ordinal()] = "-";
+        OPERATOR_TEXT[TokenKind.MULTIPLY.ordinal()] = "*";
+        OPERATOR_TEXT[TokenKind.DIVIDE.ordinal()] = "/";
+    }
+
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY]; // VariableType переменной или константы
+    private int[] positions = new int[INITIAL_CAPACITY];
+    private int[] textStarts = new int[INITIAL_CAPACITY];
+    private int[] textLengths = new int[INITIAL_CAPACITY];
+    private int[] symbolIds = new int[INITIAL_CAPACITY];
+    private long[] literals = new long[INITIAL_CAPACITY]; // long или биты double
+    private boolean[] annotated = new boolean[INITIAL_CAPACITY]; // У идентификатора была аннотация [f]/[i]
+    private char[] textPool = new char[INITIAL_CAPACITY * 4];
+    private int size;
+    private int poolSize;
+    private int poolGarbage; // Символы пула, оставшиеся от замененных токенов
+    private final SymbolTable symbols; // Имена идентификаторов, добавленных по номеру символа
+
+    public TokenBuffer() {
+        this(null);
+    }
+
+    /**
+     * @param symbols таблица, из которой берутся имена идентификаторов, добавленных через
+     *                {@link #addIdentifier(int, int, VariableType, boolean)}
+     */
+    public TokenBuffer(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    public void addOperator(TokenKind kind, int position) {
+        int index = this.append(kind, position, NO_TYPE);
+        textLengths[index] = 0;
+    }
+
+    /**
+     * Добавляет числовую константу; значение разбирается здесь, чтобы дальше не разбирать текст
+     */
+    public void addNumber(CharSequence text, int position) {
+        boolean isFloat = false;
+        for (int i = 0; i < text.length() && !isFloat; i++) {
+            char c = text.charAt(i);
+            isFloat = c == '.' || c == 'e' || c == 'E';
+        }
+        int index = this.append(TokenKind.NUMBER, position,
+                (byte) (isFloat ? VariableType.FLOAT : VariableType.INTEGER).ordinal());
+        this.appendText(index, text);
+        String value = text.toString();
+        if (isFloat) {
+            literals[index] = Double.doubleToRawLongBits(Double.parseDouble(value));
+        } else {
+            try {
+                literals[index] = Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                types[index] = OUT_OF_RANGE;
+            }
+        }
+    }
+
+    /**
+     * @param variableType тип переменной в таблице символов на момент чтения токена
+     */
+    public void addIdentifier(CharSequence name, int position, int symbolId, VariableType variableType) {
+        int index = this.append(TokenKind.IDENTIFIER, position, (byte) variableType.ordinal());
+        this.appendText(index, name);
+        symbolIds[index] = symbolId;
+    }
+
+    /**
+     * Добавляет идентификатор без копии имени: имя берется из таблицы символов буфера
+     * @param annotated true, если тип указан в самом токене ([f]/[i]); тогда variableType — это он
+     */
+    public void addIdentifier(int symbolId, int position, VariableType variableType, boolean annotated) {
+        if (symbols == null) {
+            throw new IllegalStateException("У буфера нет таблицы символов");
+        }
+        int index = this.append(TokenKind.IDENTIFIER, position, (byte) variableType.ordinal());
+        textLengths[index] = -1;
+        symbolIds[index] = symbolId;
+        this.annotated[index] = annotated;
+    }
+
+    public void addUnknown(CharSequence text, int position) {
+        int index = this.append(TokenKind.UNKNOWN, position, NO_TYPE);
+        this.appendText(index, text);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenKind kind(int index) {
+        return KINDS[kinds[this.checkIndex(index)]];
+    }
+
+    public int position(int index) {
+        return positions[this.checkIndex(index)];
+    }
+
+    /**
+     * Номер идентификатора в таблице символов (только для идентификаторов)
+     */
+    public int symbolId(int index) {
+        return symbolIds[this.checkIndex(index)];
+    }
+
+    /**
+     * @return true, если у идентификатора в тексте указан тип
+     */
+    public boolean isAnnotated(int index) {
+        return annotated[this.checkIndex(index)];
+    }
+
+    /**
+     * Переназначает идентификатору номер и тип (после перенумерации таблицы символов)
+     */
+    public void setIdentifier(int index, int symbolId, VariableType variableType) {
+        if (kinds[this.checkIndex(index)] != TokenKind.IDENTIFIER.ordinal()) {
+            throw new IllegalArgumentException("Токен не идентификатор: " + this.text(index));
+        }
+        symbolIds[index] = symbolId;
+        types[index] = (byte) variableType.ordinal();
+    }
+
+    /**
+     * Тип переменной для идентификатора или тип константы для числа; иначе null
+     */
+    public VariableType variableType(int index) {
+        byte type = types[this.checkIndex(index)];
+        if (type == OUT_OF_RANGE) return VariableType.INTEGER;
+        return type == NO_TYPE ? null : VARIABLE_TYPES[type];
+    }
+
+    /**
+     * @return false для целой константы вне диапазона long
+     */
+    public boolean hasLiteralValue(int index) {
+        return kinds[this.checkIndex(index)] == TokenKind.NUMBER.ordinal() && types[index] != OUT_OF_RANGE;
+    }
+
+    public long integerValue(int index) {
+        return literals[this.checkIndex(index)];
+    }
+
+    public double floatValue(int index) {
+        return Double.longBitsToDouble(literals[this.checkIndex(index)]);
+    }
+
+    /**
+     * Текст токена в том виде, в каком он выводится (без пробелов внутри токена)
+     */
+    public String text(int index) {
+        this.checkIndex(index);
+        String operatorText = OPERATOR_TEXT[kinds[index]];
+        if (operatorText != null) {
+            return operatorText;
+        }
+        if (textLengths[index] < 0) {
+            return symbols.name(symbolIds[index]);
+        }
+        return new String(textPool, textStarts[index], textLengths[index]);
+    }
+
+    /**
+     * Пишет текст токена в поток, не создавая строку
+     */
+    public void writeText(int index, Writer out) throws IOException {
+        this.checkIndex(index);
+        String operatorText = OPERATOR_TEXT[kinds[index]];
+        if (operatorText != null) {
+            out.write(operatorText);
+        } else if (textLengths[index] < 0) {
+            symbols.writeName(symbolIds[index], out);
+        } else {
+            out.write(textPool, textStarts[index], textLengths[index]);
+        }
+    }
+
+    /**
+     * Создает объектное представление токена для кода, работающего со списком токенов
+     */
+    public LexcialObject get(int index) {
+        TokenKind kind = this.kind(index);
+        LexcialObject token = LexicalObjectsFactory.createLexicalObject(
+                this.text(index), positions[index], TypeDetector.typeOf(kind));
+        if (kind == TokenKind.IDENTIFIER) {
+            token.setVariableType(this.variableType(index));
+            token.setIdentifierId(symbolIds[index]);
+        }
+        return token;
+    }
+
+    public List<LexcialObject> toList() {
+        List<LexcialObject> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(this.get(i));
+        }
+        return tokens;
+    }
+
+    /**
+     * Переносит в буфер список токенов, построенный вне лексического анализатора
+     */
+    public static TokenBuffer of(List<LexcialObject> tokens) {
+        TokenBuffer buffer = new TokenBuffer();
+        for (LexcialObject token : tokens) {
+            buffer.add(token);
+        }
+        return buffer;
+    }
+
+    /**
+     * Добавляет токен из объектного представления
+     * @return индекс добавленного токена
+     */
+    public int add(LexcialObject token) {
+        TokenKind kind = token.getKind() != null ? token.getKind() : token.getType().getKind();
+        switch (kind) {
+            case NUMBER:
+                this.addNumber(token.getValue(), token.getInLinePosition());
+                break;
+            case IDENTIFIER:
+                this.addIdentifier(token.getValue(), token.getInLinePosition(),
+                        token.getIdentifierId() != null ? token.getIdentifierId() : 0,
+                        token.getVariableType() != null ? token.getVariableType() : VariableType.INTEGER);
+                break;
+            case UNKNOWN:
+                this.addUnknown(token.getValue(), token.getInLinePosition());
+                break;
+            default:
+                this.addOperator(kind, token.getInLinePosition());
+        }
+        return size - 1;
+    }
+
+    /**
+     * Заменяет токены [from, to) всеми токенами replacement (при правке текста).
+     * Позиции в replacement должны быть уже позициями нового текста; позиции токенов после
+     * замененных сдвигаются на positionDelta. Номера идентификаторов копируются как есть,
+     * поэтому они должны относиться к таблице символов этого буфера
+     */
+    public void replace(int from, int to, TokenBuffer replacement, int positionDelta) {
+        if (from < 0 || from > to || to > size) {
+            throw new IndexOutOfBoundsException("[" + from + ", " + to + "), size " + size);
+        }
+        for (int i = from; i < to; i++) {
+            poolGarbage += Math.max(textLengths[i], 0);
+        }
+        int count = replacement.size;
+        int tail = size - to;
+        int newSize = from + count + tail;
+        if (newSize > kinds.length) {
+            this.grow(Math.max(newSize, size * 2));
+        }
+        if (count != to - from) {
+            int target = from + count;
+            System.arraycopy(kinds, to, kinds, target, tail);
+            System.arraycopy(types, to, types, target, tail);
+            System.arraycopy(positions, to, positions, target, tail);
+            System.arraycopy(textStarts, to, textStarts, target, tail);
+            System.arraycopy(textLengths, to, textLengths, target, tail);
+            System.arraycopy(symbolIds, to, symbolIds, target, tail);
+            System.arraycopy(literals, to, literals, target, tail);
+            System.arraycopy(annotated, to, annotated, target, tail);
+        }
+        if (positionDelta != 0) {
+            for (int i = from + count; i < newSize; i++) {
+                positions[i] += positionDelta;
+            }
+        }
+
+        System.arraycopy(replacement.kinds, 0, kinds, from, count);
+        System.arraycopy(replacement.types, 0, types, from, count);
+        System.arraycopy(replacement.positions, 0, positions, from, count);
+        System.arraycopy(replacement.symbolIds, 0, symbolIds, from, count);
+        System.arraycopy(replacement.literals, 0, literals, from, count);
+        System.arraycopy(replacement.annotated, 0, annotated, from, count);
+        for (int i = 0; i < count; i++) {
+            int length = replacement.textLengths[i];
+            if (length > 0) {
+                this.appendText(from + i, replacement.textPool, replacement.textStarts[i], length);
+            } else {
+                textLengths[from + i] = length;
+            }
+        }
+        size = newSize;
+
+        // Пул только растет; когда больше половины в нем — текст удаленных токенов, он пересобирается
+        if (poolGarbage > INITIAL_CAPACITY * 4 && poolGarbage * 2 > poolSize) {
+            this.compactPool();
+        }
+    }
+
+    private void compactPool() {
+        char[] pool = new char[Math.max(poolSize - poolGarbage, INITIAL_CAPACITY * 4)];
+        int used = 0;
+        for (int i = 0; i < size; i++) {
+            int length = textLengths[i];
+            if (length <= 0) continue;
+            System.arraycopy(textPool, textStarts[i], pool, used, length);
+            textStarts[i] = used;
+            used += length;
+        }
+        textPool = pool;
+        poolSize = used;
+        poolGarbage = 0;
+    }
+
+    private int append(TokenKind kind, int position, byte type) {
+        if (size == kinds.length) {
+            this.grow(size * 2);
+        }
+        kinds[size] = (byte) kind.ordinal();
+        types[size] = type;
+        positions[size] = position;
+        symbolIds[size] = 0;
+        annotated[size] = false;
+        return size++;
+    }
+
+    private void grow(int capacity) {
+        kinds = Arrays.copyOf(kinds, capacity);
+        types = Arrays.copyOf(types, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        textStarts = Arrays.copyOf(textStarts, capacity);
+        textLengths = Arrays.copyOf(textLengths, capacity);
+        symbolIds = Arrays.copyOf(symbolIds, capacity);
+        literals = Arrays.copyOf(literals, capacity);
+        annotated = Arrays.copyOf(annotated, capacity);
+    }
+
+    private void appendText(int index, CharSequence text) {
+        int length = text.length();
+        this.reservePool(length);
+        for (int i = 0; i < length; i++) {
+            textPool[poolSize + i] = text.charAt(i);
+        }
+        textStarts[index] = poolSize;
+        textLengths[index] = length;
+        poolSize += length;
+    }
+
+    private void appendText(int index, char[] text, int start, int length) {
+        this.reservePool(length);
+        System.arraycopy(text, start, textPool, poolSize, length);
+        textStarts[index] = poolSize;
+        textLengths[index] = length;
+        poolSize += length;
+    }
+
+    private void reservePool(int length) {
+        if (poolSize + length > textPool.length) {
+            textPool = Arrays.copyOf(textPool, Math.max(textPool.length * 2, poolSize + length));
+        }
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        return index;
+    }
+}
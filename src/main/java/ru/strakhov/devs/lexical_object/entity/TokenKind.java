@@ -0,0 +1,17 @@
+package ru.strakhov.devs.lexical_object.entity;
+
+/**
+ * Вид токена. Назначается типом лексемы при создании токена, чтобы синтаксический
+ * анализатор сравнивал константы перечисления, а не имена классов
+ */
+public enum TokenKind {
+    OPEN_BRACKET,
+    CLOSE_BRACKET,
+    PLUS,
+    MINUS,
+    MULTIPLY,
+    DIVIDE,
+    NUMBER,
+    IDENTIFIER,
+    UNKNOWN
+}
@@ -1,9 +1,10 @@
 package ru.strakhov.devs.lexical_object.type;
 
 import ru.strakhov.devs.lexical_object.abstractions.LexicalObjectType;
+import ru.strakhov.devs.lexical_object.entity.TokenKind;
 
 public class CloseBracketType extends LexicalObjectType {
     public CloseBracketType() {
-        super("\\)");
+        super("\\)", TokenKind.CLOSE_BRACKET);
     }
 }
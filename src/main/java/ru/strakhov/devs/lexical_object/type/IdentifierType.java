@@ -1,9 +1,10 @@
 package ru.strakhov.devs.lexical_object.type;
 
 import ru.strakhov.devs.lexical_object.abstractions.LexicalObjectType;
+import ru.strakhov.devs.lexical_object.entity.TokenKind;
 
 public class IdentifierType extends LexicalObjectType {
     public IdentifierType() {
-        super("[A-Za-z_][A-Za-z0-9_]*");
+        super("[A-Za-z_][A-Za-z0-9_]*", TokenKind.IDENTIFIER);
     }
 }
@@ -1,9 +1,10 @@
 package ru.strakhov.devs.lexical_object.type;
 
 import ru.strakhov.devs.lexical_object.abstractions.LexicalObjectType;
+import ru.strakhov.devs.lexical_object.entity.TokenKind;
 
 public class MultiplyType extends LexicalObjectType {
     public MultiplyType() {
-        super("\\*");
+        super("\\*", TokenKind.MULTIPLY);
     }
 }
\ No newline at end of file
@@ -1,9 +1,10 @@
 package ru.strakhov.devs.lexical_object.type;
 
 import ru.strakhov.devs.lexical_object.abstractions.LexicalObjectType;
+import ru.strakhov.devs.lexical_object.entity.TokenKind;
 
 public class NumberType extends LexicalObjectType {
     public NumberType() {
-        super("^[+-]?(?:0|[1-9]\\d*)(?:\\.\\d+)?$");
+        super("^[+-]?(?:0|[1-9]\\d*)(?:\\.\\d+)?$", TokenKind.NUMBER);
     }
 }
@@ -1,9 +1,10 @@
 package ru.strakhov.devs.lexical_object.type;
 
 import ru.strakhov.devs.lexical_object.abstractions.LexicalObjectType;
+import ru.strakhov.devs.lexical_object.entity.TokenKind;
 
 public class OpenBracketType extends LexicalObjectType {
     public OpenBracketType() {
-        super("\\(");
+        super("\\(", TokenKind.OPEN_BRACKET);
     }
 }
@@ -1,9 +1,10 @@
 package ru.strakhov.devs.lexical_object.type;
 
 import ru.strakhov.devs.lexical_object.abstractions.LexicalObjectType;
+import ru.strakhov.devs.lexical_object.entity.TokenKind;
 
 public class PlusType extends LexicalObjectType {
     public PlusType() {
-        super("\\+");
+        super("\\+", TokenKind.PLUS);
     }
 }
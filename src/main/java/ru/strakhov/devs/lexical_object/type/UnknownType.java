@@ -1,9 +1,10 @@
 package ru.strakhov.devs.lexical_object.type;
 
 import ru.strakhov.devs.lexical_object.abstractions.LexicalObjectType;
+import ru.strakhov.devs.lexical_object.entity.TokenKind;
 
 public class UnknownType extends LexicalObjectType {
     public UnknownType() {
-        super("");
+        super("", TokenKind.UNKNOWN);
     }
 }
\ No newline at end of file
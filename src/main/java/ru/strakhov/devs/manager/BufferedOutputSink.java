@@ -0,0 +1,34 @@
+package ru.strakhov.devs.manager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Накапливает результаты в памяти, чтобы затем выдать их в другой sink
+ * в нужный момент (например, в исходном порядке после параллельной обработки)
+ */
+public class BufferedOutputSink implements OutputSink {
+    private final List<String> fileNames = new ArrayList<>();
+    private final List<String> contents = new ArrayList<>();
+
+    @Override
+    public void write(String fileName, String content) {
+        fileNames.add(fileName);
+        contents.add(content);
+    }
+
+    public List<String> getFileNames() {
+        return Collections.unmodifiableList(fileNames);
+    }
+
+    public List<String> getContents() {
+        return Collections.unmodifiableList(contents);
+    }
+
+    public void replayTo(OutputSink sink) {
+        for (int i = 0; i < fileNames.size(); i++) {
+            sink.write(fileNames.get(i), contents.get(i));
+        }
+    }
+}
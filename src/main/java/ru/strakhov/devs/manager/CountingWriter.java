@@ -0,0 +1,47 @@
+package ru.strakhov.devs.manager;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Пропускает текст в другой поток и считает записанные символы. Внутренний поток не закрывается
+ */
+public class CountingWriter extends Writer {
+    private final Writer out;
+    private long count;
+
+    public CountingWriter(Writer out) {
+        this.out = out;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        out.write(c);
+        count++;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        out.write(buffer, offset, length);
+        count += length;
+    }
+
+    @Override
+    public void write(String text, int offset, int length) throws IOException {
+        out.write(text, offset, length);
+        count += length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+    }
+}
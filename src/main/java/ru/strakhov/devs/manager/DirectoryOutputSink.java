@@ -0,0 +1,33 @@
+package ru.strakhov.devs.manager;
+
+import java.nio.file.Paths;
+
+/**
+ * Пишет результаты в отдельные файлы, при необходимости — в заданный каталог.
+ * Относительные пути, как и раньше, разрешаются от каталога с jar-файлом.
+ */
+public class DirectoryOutputSink implements OutputSink {
+    private final String directory;
+
+    public DirectoryOutputSink() {
+        this(null);
+    }
+
+    public DirectoryOutputSink(String directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public void write(String fileName, String content) {
+        IOFileManager.createFile(this.resolve(fileName), content);
+    }
+
+    @Override
+    public void write(String fileName, TextEmitter emitter) {
+        IOFileManager.writeFile(this.resolve(fileName), emitter);
+    }
+
+    private String resolve(String fileName) {
+        return directory == null ? fileName : Paths.get(directory, fileName).toString();
+    }
+}
@@ -1,36 +1,99 @@
 package ru.strakhov.devs.manager;
 
 import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 public class IOFileManager {
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
     public static String readFile(String inputFileName) throws IOException {
         Path inputFileNamePath = Paths.get(inputFileName);
-        BufferedReader bufferedReader = new BufferedReader(new FileReader(inputFileNamePath.toFile()));
-        String line = "";
-        while (bufferedReader.ready()) {
-            line = bufferedReader.readLine();
+        StringBuilder content = new StringBuilder();
+        try (BufferedReader bufferedReader = Files.newBufferedReader(inputFileNamePath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                if (content.length() > 0) {
+                    content.append('\n');
+                }
+                content.append(line);
+            }
+        }
+        return content.toString();
+    }
+
+    /**
+     * Открывает входной файл для потокового чтения лексическим анализатором
+     */
+    public static Reader openReader(String inputFileName) throws IOException {
+        return Files.newBufferedReader(Paths.get(inputFileName), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Отображает входной файл в память и возвращает его как последовательность символов
+     * без копирования в кучу. Файл должен быть не больше {@link Integer#MAX_VALUE} байт.
+     */
+    public static MappedCharSequence mapFile(String inputFileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(inputFileName), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Файл слишком большой для отображения в память: " + inputFileName);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new MappedCharSequence(buffer);
         }
-        bufferedReader.close();
-        return line;
     }
 
     public static void createFile(String fileName, String content) {
-        try {
-            Path jarDirectory = Paths.get(IOFileManager.class.getProtectionDomain()
-                            .getCodeSource()
-                            .getLocation()
-                            .toURI())
-                    .getParent();
+        writeFile(fileName, out -> out.write(content));
+    }
 
-            Path filePath = jarDirectory.resolve(fileName);
+    /**
+     * Создает файл и пишет в него результат стадии через буферизованный поток,
+     * не держа весь текст в памяти
+     */
+    public static void writeFile(String fileName, TextEmitter emitter) {
+        try {
+            Path filePath = resolveOutputPath(fileName);
             Files.createDirectories(filePath.getParent());
-            Files.writeString(filePath, content);
-
+            try (Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(Files.newOutputStream(filePath), StandardCharsets.UTF_8), WRITE_BUFFER_SIZE)) {
+                emitter.emit(writer);
+            }
         } catch (Exception e) {
             throw new RuntimeException("Не удалось создать файл: " + fileName, e);
         }
     }
+
+    /**
+     * Собирает результат стадии в строку — для тех, кому нужен текст целиком
+     */
+    public static String render(TextEmitter emitter) {
+        StringWriter writer = new StringWriter();
+        try {
+            emitter.emit(writer);
+        } catch (IOException e) {
+            // StringWriter не бросает IOException, сюда попадают только ошибки самой стадии
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Относительные пути разрешаются от каталога с jar-файлом
+     */
+    private static Path resolveOutputPath(String fileName) throws URISyntaxException {
+        Path jarDirectory = Paths.get(IOFileManager.class.getProtectionDomain()
+                        .getCodeSource()
+                        .getLocation()
+                        .toURI())
+                .getParent();
+        return jarDirectory.resolve(fileName);
+    }
 }
@@ -0,0 +1,81 @@
+package ru.strakhov.devs.manager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Представление отображенного в память файла (ASCII/UTF-8) как {@link CharSequence}.
+ * Каждый байт файла — один символ, поэтому позиции токенов и ошибок считаются в байтах.
+ * Все допустимые символы выражения — ASCII; для первого байта многобайтовой
+ * последовательности UTF-8 возвращается декодированный символ (чтобы сообщение
+ * об ошибке показало его), для остальных байтов — U+FFFD.
+ */
+public class MappedCharSequence implements CharSequence {
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+
+    public MappedCharSequence(ByteBuffer buffer) {
+        this(buffer, 0, buffer.limit());
+    }
+
+    private MappedCharSequence(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        int b = buffer.get(offset + index) & 0xFF;
+        if (b < 0x80) {
+            return (char) b;
+        }
+        return decodeLeadByte(offset + index, b);
+    }
+
+    /**
+     * Декодирует двух- и трехбайтовые последовательности UTF-8, начинающиеся с байта b
+     */
+    private char decodeLeadByte(int position, int b) {
+        int end = offset + length;
+        if ((b & 0xE0) == 0xC0 && position + 1 < end) {
+            int b1 = buffer.get(position + 1) & 0xFF;
+            if ((b1 & 0xC0) == 0x80) {
+                return (char) (((b & 0x1F) << 6) | (b1 & 0x3F));
+            }
+        } else if ((b & 0xF0) == 0xE0 && position + 2 < end) {
+            int b1 = buffer.get(position + 1) & 0xFF;
+            int b2 = buffer.get(position + 2) & 0xFF;
+            if ((b1 & 0xC0) == 0x80 && (b2 & 0xC0) == 0x80) {
+                return (char) (((b & 0x0F) << 12) | ((b1 & 0x3F) << 6) | (b2 & 0x3F));
+            }
+        }
+        return REPLACEMENT;
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+        return new MappedCharSequence(buffer, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,16 @@
+package ru.strakhov.devs.manager;
+
+/**
+ * Приемник результатов стадий: каждая стадия отдает именованный файл целиком
+ */
+public interface OutputSink {
+    void write(String fileName, String content);
+
+    /**
+     * Принимает результат, который стадия пишет потоково. По умолчанию результат
+     * собирается в строку; приемники, пишущие в файл или поток, переопределяют метод
+     */
+    default void write(String fileName, TextEmitter emitter) {
+        this.write(fileName, IOFileManager.render(emitter));
+    }
+}
@@ -0,0 +1,84 @@
+package ru.strakhov.devs.manager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Пишет результаты в общий поток: перед содержимым каждого файла выводится
+ * заголовок «### <метка> <имя файла>»
+ */
+public class StreamOutputSink implements OutputSink {
+    private final Writer writer;
+    private final String label;
+
+    public StreamOutputSink(Writer writer, String label) {
+        this.writer = writer;
+        this.label = label;
+    }
+
+    @Override
+    public void write(String fileName, String content) {
+        this.write(fileName, out -> out.write(content));
+    }
+
+    @Override
+    public void write(String fileName, TextEmitter emitter) {
+        try {
+            writer.write("### ");
+            writer.write(label);
+            writer.write(' ');
+            writer.write(fileName);
+            writer.write('\n');
+            LastCharWriter content = new LastCharWriter(writer);
+            emitter.emit(content);
+            if (content.lastChar != -1 && content.lastChar != '\n') {
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать результат: " + fileName, e);
+        }
+    }
+
+    /**
+     * Пропускает текст в общий поток и запоминает последний символ,
+     * чтобы каждый файл заканчивался переводом строки. Общий поток не закрывается
+     */
+    private static final class LastCharWriter extends Writer {
+        private final Writer out;
+        private int lastChar = -1;
+
+        LastCharWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            lastChar = (char) c;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            if (length == 0) return;
+            out.write(buffer, offset, length);
+            lastChar = buffer[offset + length - 1];
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            if (length == 0) return;
+            out.write(text, offset, length);
+            lastChar = text.charAt(offset + length - 1);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package ru.strakhov.devs.manager;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Стадия, которая пишет свой результат в поток по мере формирования,
+ * не собирая его целиком в строку
+ */
+@FunctionalInterface
+public interface TextEmitter {
+    void emit(Writer out) throws IOException;
+}
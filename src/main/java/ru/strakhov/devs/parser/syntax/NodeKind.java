@@ -0,0 +1,65 @@
+package ru.strakhov.devs.parser.syntax;
+
+import ru.strakhov.devs.lexical_object.entity.TokenKind;
+
+/**
+ * Вид узла синтаксического дерева. Унарный и бинарный минус — разные виды,
+ * поэтому проходам не нужно смотреть на число потомков
+ */
+public enum NodeKind {
+    IDENTIFIER(null),
+    CONSTANT(null),
+    NEGATE("-"),
+    ADD("+"),
+    SUBTRACT("-"),
+    MULTIPLY("*"),
+    DIVIDE("/"),
+    INT_TO_FLOAT("Int2Float");
+
+    private final String label;
+
+    NodeKind(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Подпись операции в дереве; у листьев подпись — текст операнда
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    public boolean isLeaf() {
+        return this == IDENTIFIER || this == CONSTANT;
+    }
+
+    public boolean isBinary() {
+        return this == ADD || this == SUBTRACT || this == MULTIPLY || this == DIVIDE;
+    }
+
+    /**
+     * @return бинарная операция для токена или null, если токен не бинарная операция
+     */
+    public static NodeKind binary(TokenKind kind) {
+        switch (kind) {
+            case PLUS: return ADD;
+            case MINUS: return SUBTRACT;
+            case MULTIPLY: return MULTIPLY;
+            case DIVIDE: return DIVIDE;
+            default: return null;
+        }
+    }
+
+    /**
+     * @return бинарная операция по ее знаку или null
+     */
+    public static NodeKind binary(String label) {
+        switch (label) {
+            case "+": return ADD;
+            case "-": return SUBTRACT;
+            case "*": return MULTIPLY;
+            case "/": return DIVIDE;
+            default: return null;
+        }
+    }
+}
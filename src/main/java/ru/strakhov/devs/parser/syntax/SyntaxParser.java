@@ -2,89 +2,148 @@ package ru.strakhov.devs.parser.syntax;
 
 import ru.strakhov.devs.exception.SyntaxException;
 import ru.strakhov.devs.lexical_object.entity.LexcialObject;
+import ru.strakhov.devs.lexical_object.entity.TokenBuffer;
+import ru.strakhov.devs.lexical_object.entity.TokenKind;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
-import java.util.Objects;
 
+/**
+ * Разбор выражения методом сортировочной станции с явными стеками операндов и операций,
+ * поэтому глубина скобок и цепочки унарных минусов ограничены только кучей.
+ * Грамматика та же, что у нисходящего разбора:
+ * expression = term {(+|-) term}, term = factor {(*|/) factor},
+ * factor = -factor | (expression) | идентификатор | число.
+ */
 public class SyntaxParser {
-    private final List<LexcialObject> tokens;
-    private int index = 0;
+    private static final int ADDITIVE_PRECEDENCE = 1;
+    private static final int MULTIPLICATIVE_PRECEDENCE = 2;
 
-    public SyntaxParser(List<LexcialObject> tokens) {
+    private final TokenBuffer tokens;
+    private final int end;
+    private int index;
+
+    public SyntaxParser(TokenBuffer tokens) {
+        this(tokens, 0, tokens.size());
+    }
+
+    /**
+     * Разбирает только токены [from, to) (например, содержимое скобок после правки);
+     * узлы ссылаются на токены всего буфера, индексы в сообщениях об ошибках — тоже
+     */
+    public SyntaxParser(TokenBuffer tokens, int from, int to) {
         this.tokens = tokens;
+        this.index = from;
+        this.end = to;
     }
 
-    public SyntaxTreeNode parseExpression() {
-        SyntaxTreeNode left = parseTerm();
-        while (currentTokenIs("PlusType", "MinusType")) {
-            String op = Objects.requireNonNull(currentToken()).getValue();
-            advance();
-            SyntaxTreeNode right = parseTerm();
-            SyntaxTreeNode node = new SyntaxTreeNode(op, currentToken());
-            node.children.add(left);
-            node.children.add(right);
-            left = node;
-        }
-        return left;
+    public SyntaxParser(List<LexcialObject> tokens) {
+        this(TokenBuffer.of(tokens));
     }
 
-    public SyntaxTreeNode parseTerm() {
-        SyntaxTreeNode left = parseFactor();
-        while (currentTokenIs("MultiplyType", "DivideType")) {
-            String op = Objects.requireNonNull(currentToken()).getValue();
-            advance();
-            SyntaxTreeNode right = parseFactor();
-            SyntaxTreeNode node = new SyntaxTreeNode(op, currentToken());
-            node.children.add(left);
-            node.children.add(right);
-            left = node;
-        }
-        return left;
+    public SyntaxTreeNode parseExpression() {
+        return this.parseTree().toNode();
     }
 
-    public SyntaxTreeNode parseFactor() {
-        LexcialObject current = currentToken();
+    /**
+     * Разбирает выражение в дерево на массивах; узлы добавляются в момент свертки,
+     * поэтому дерево сразу получается в обратном порядке обхода
+     */
+    public SyntaxTree parseTree() {
+        SyntaxTree tree = new SyntaxTree(tokens, end - index);
+        IntStack operands = new IntStack();
+        Deque<Operation> operations = new ArrayDeque<>();
 
-        if (currentTokenIs("MinusType")) {
-            advance();
-            SyntaxTreeNode operand = parseFactor();
-            SyntaxTreeNode node = new SyntaxTreeNode("-", current);
-            node.children.add(operand);
-            return node;
-        }
+        while (true) {
+            // Ожидаем операнд: перед ним могут стоять унарные минусы и открывающие скобки
+            this.parseOperand(tree, operands, operations);
+
+            // После операнда: завершаем унарные минусы, затем бинарная операция или конец уровня
+            while (true) {
+                while (!operations.isEmpty() && operations.peek().kind == Operation.UNARY) {
+                    this.reduce(tree, operands, operations.pop());
+                }
+
+                int precedence = this.binaryPrecedence();
+                if (precedence > 0) {
+                    // Левая ассоциативность: сначала сворачиваем операции не ниже приоритетом
+                    while (!operations.isEmpty() && operations.peek().kind == Operation.BINARY
+                            && operations.peek().precedence >= precedence) {
+                        this.reduce(tree, operands, operations.pop());
+                    }
+                    operations.push(new Operation(Operation.BINARY, index, precedence));
+                    advance();
+                    break;
+                }
 
-        if (currentTokenIs("OpenBracketType")) {
-            advance();
-            SyntaxTreeNode expr = parseExpression();
-            if (!currentTokenIs("CloseBracketType")) {
-                throw new SyntaxException("Missing closing parenthesis at index " + index);
+                while (!operations.isEmpty() && operations.peek().kind == Operation.BINARY) {
+                    this.reduce(tree, operands, operations.pop());
+                }
+                if (operations.isEmpty()) {
+                    return tree;
+                }
+
+                // На вершине открывающая скобка: уровень закончен, нужна закрывающая
+                if (currentKind() != TokenKind.CLOSE_BRACKET) {
+                    throw new SyntaxException("Missing closing parenthesis at index " + index);
+                }
+                operations.pop();
+                advance();
             }
-            advance();
-            return expr;
         }
+    }
 
-        if (currentTokenIs("IdentifierType", "NumberType")) {
-            advance();
-            assert current != null;
-            return new SyntaxTreeNode(current.getValue(), current);
+    /**
+     * Кладет в стек унарные минусы и открывающие скобки до первого операнда, затем сам операнд
+     */
+    private void parseOperand(SyntaxTree tree, IntStack operands, Deque<Operation> operations) {
+        while (true) {
+            TokenKind kind = currentKind();
+            if (kind == TokenKind.MINUS) {
+                operations.push(new Operation(Operation.UNARY, index, 0));
+                advance();
+            } else if (kind == TokenKind.OPEN_BRACKET) {
+                operations.push(new Operation(Operation.PARENTHESIS, index, 0));
+                advance();
+            } else if (kind == TokenKind.IDENTIFIER || kind == TokenKind.NUMBER) {
+                operands.push(tree.addLeaf(index));
+                advance();
+                return;
+            } else {
+                throw new SyntaxException("Expected operand at index " + index);
+            }
         }
+    }
 
-        throw new SyntaxException("Expected operand at index " + index);
+    private void reduce(SyntaxTree tree, IntStack operands, Operation operation) {
+        if (operation.kind == Operation.UNARY) {
+            operands.push(tree.addOperation(NodeKind.NEGATE, operation.tokenIndex, operands.pop(), SyntaxTree.NONE));
+        } else {
+            int right = operands.pop();
+            int left = operands.pop();
+            NodeKind kind = NodeKind.binary(tokens.kind(operation.tokenIndex));
+            operands.push(tree.addOperation(kind, operation.tokenIndex, left, right));
+        }
     }
 
-    private LexcialObject currentToken() {
-        if (index >= tokens.size()) return null;
-        return tokens.get(index);
+    /**
+     * @return приоритет текущей бинарной операции или 0, если текущий токен не операция
+     */
+    private int binaryPrecedence() {
+        TokenKind kind = currentKind();
+        if (kind == TokenKind.PLUS || kind == TokenKind.MINUS) return ADDITIVE_PRECEDENCE;
+        if (kind == TokenKind.MULTIPLY || kind == TokenKind.DIVIDE) return MULTIPLICATIVE_PRECEDENCE;
+        return 0;
     }
 
-    private boolean currentTokenIs(String... typeNames) {
-        LexcialObject t = currentToken();
-        if (t == null) return false;
-        String typeName = t.getType().getClass().getSimpleName();
-        for (String name : typeNames) {
-            if (typeName.equals(name)) return true;
-        }
-        return false;
+    /**
+     * @return вид текущего токена или null в конце ввода
+     */
+    private TokenKind currentKind() {
+        if (index >= end) return null;
+        return tokens.kind(index);
     }
 
     private void advance() {
@@ -92,8 +151,46 @@ public class SyntaxParser {
     }
 
     public void checkEnd() {
-        if (index < tokens.size()) {
-            throw new SyntaxException("Unexpected token at index " + index + ": " + currentToken());
+        if (index < end) {
+            throw new SyntaxException("Unexpected token at index " + index + ": " + tokens.get(index));
+        }
+    }
+
+    /**
+     * Элемент стека операций: унарный минус, бинарная операция или открывающая скобка
+     */
+    private static class Operation {
+        static final int UNARY = 0;
+        static final int BINARY = 1;
+        static final int PARENTHESIS = 2;
+
+        final int kind;
+        final int tokenIndex;
+        final int precedence;
+
+        Operation(int kind, int tokenIndex, int precedence) {
+            this.kind = kind;
+            this.tokenIndex = tokenIndex;
+            this.precedence = precedence;
+        }
+    }
+
+    /**
+     * Стек индексов узлов без упаковки в Integer
+     */
+    private static class IntStack {
+        private int[] items = new int[16];
+        private int size;
+
+        void push(int item) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = item;
+        }
+
+        int pop() {
+            return items[--size];
         }
     }
-}
\ No newline at end of file
+}
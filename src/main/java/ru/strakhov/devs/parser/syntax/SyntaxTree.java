@@ -0,0 +1,476 @@
+package ru.strakhov.devs.parser.syntax;
+
+import ru.strakhov.devs.factory.LexicalObjectsFactory;
+import ru.strakhov.devs.lexical_object.entity.LexcialObject;
+import ru.strakhov.devs.lexical_object.entity.TokenBuffer;
+import ru.strakhov.devs.lexical_object.entity.TokenKind;
+import ru.strakhov.devs.lexical_object.entity.VariableType;
+import ru.strakhov.devs.utils.TypeDetector;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Синтаксическое дерево в параллельных массивах: узел — это индекс,
+ * у него есть вид, тип результата, левый и правый потомок и индекс токена в {@link TokenBuffer}.
+ * <p>
+ * Узлы добавляются только после своих потомков, и все узлы достижимы из корня, поэтому
+ * массивы хранят дерево в обратном порядке обхода (потомки слева направо, затем родитель),
+ * а корень — последний узел. Проходы снизу вверх — это цикл по индексам, без стека и указателей.
+ * <p>
+ * У листа-константы значение лежит в полях потомков (старшие и младшие 32 бита long
+ * или битов double). Константа, созданная при упрощении, хранит токен исходного узла
+ * только ради позиции, а ее текст строится по значению.
+ */
+public class SyntaxTree {
+    public static final int NONE = -1;
+
+    private static final byte SYNTHESIZED = 1; // Константа создана при упрощении, текст не из токена
+    private static final byte NO_VALUE = 2;    // Целая константа вне диапазона long
+    private static final int INITIAL_CAPACITY = 16;
+    private static final NodeKind[] KINDS = NodeKind.values();
+    private static final VariableType[] VARIABLE_TYPES = VariableType.values();
+
+    private final TokenBuffer tokens;
+    private byte[] kinds;
+    private byte[] types;
+    private byte[] flags;
+    private int[] lefts;
+    private int[] rights;
+    private int[] tokenIndexes;
+    private int size;
+
+    public SyntaxTree(TokenBuffer tokens) {
+        this(tokens, INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param capacity ожидаемое число узлов (например, число токенов)
+     */
+    public SyntaxTree(TokenBuffer tokens, int capacity) {
+        this.tokens = tokens;
+        int initialCapacity = Math.max(capacity, INITIAL_CAPACITY);
+        kinds = new byte[initialCapacity];
+        types = new byte[initialCapacity];
+        flags = new byte[initialCapacity];
+        lefts = new int[initialCapacity];
+        rights = new int[initialCapacity];
+        tokenIndexes = new int[initialCapacity];
+    }
+
+    /**
+     * Добавляет лист для идентификатора или числа
+     */
+    public int addLeaf(int tokenIndex) {
+        this.ensureCapacity(size + 1);
+        this.writeLeaf(size, tokenIndex);
+        return size++;
+    }
+
+    /**
+     * Перезаписывает лист по другому токену-операнду; форма дерева не меняется,
+     * поэтому типы предков нужно обновить через {@link #updateType(int)}
+     */
+    public void setLeaf(int node, int tokenIndex) {
+        if (!this.isLeaf(node)) {
+            throw new IllegalArgumentException("Узел не лист: " + this.label(node));
+        }
+        this.writeLeaf(node, tokenIndex);
+    }
+
+    /**
+     * Добавляет целую константу, полученную при упрощении
+     * @param originToken токен узла, на месте которого появилась константа, или {@link #NONE}
+     */
+    public int addConstant(long value, int originToken) {
+        return this.appendConstant(VariableType.INTEGER, SYNTHESIZED, value, originToken);
+    }
+
+    public int addConstant(double value, int originToken) {
+        return this.appendConstant(VariableType.FLOAT, SYNTHESIZED, Double.doubleToRawLongBits(value), originToken);
+    }
+
+    /**
+     * Добавляет операцию над уже добавленными узлами; тип результата выводится из типов потомков
+     * @param right правый операнд или {@link #NONE} для унарных операций
+     */
+    public int addOperation(NodeKind kind, int tokenIndex, int left, int right) {
+        return this.append(kind, this.inferType(kind, left, right), (byte) 0, left, right, tokenIndex);
+    }
+
+    /**
+     * Меняет бинарную операцию на другую бинарную (например, + на -); потомки и тип остаются
+     */
+    public void setKind(int node, NodeKind kind) {
+        if (!this.kind(node).isBinary() || !kind.isBinary()) {
+            throw new IllegalArgumentException("Заменить можно только бинарную операцию: " + this.label(node));
+        }
+        kinds[node] = (byte) kind.ordinal();
+    }
+
+    /**
+     * Заново выводит тип операции из типов потомков, например после замены потомка
+     * @return true, если тип изменился и его нужно пересчитать у родителя
+     */
+    public boolean updateType(int node) {
+        if (this.isLeaf(node)) {
+            return false;
+        }
+        byte type = (byte) this.inferType(this.kind(node), lefts[node], rights[node]).ordinal();
+        if (types[node] == type) {
+            return false;
+        }
+        types[node] = type;
+        return true;
+    }
+
+    /**
+     * Заменяет поддерево с узлами [first, root] деревом replacement над тем же буфером токенов.
+     * В обратном порядке обхода поддерево занимает непрерывный отрезок, а ссылаются на него только
+     * узлы правее, поэтому достаточно сдвинуть хвост массивов и поправить ссылки в нем.
+     * Индексы токенов узлов правее поддерева, начиная с tokenFrom, сдвигаются на tokenDelta;
+     * узлы левее не меняются — в дереве разбора их токены стоят раньше токенов поддерева.
+     * Типы предков не пересчитываются
+     * @return новый индекс корня поддерева
+     */
+    public int replace(int first, int root, SyntaxTree replacement, int tokenFrom, int tokenDelta) {
+        if (first < 0 || first > root || root >= size || replacement.size == 0) {
+            throw new IndexOutOfBoundsException("[" + first + ", " + root + "], size " + size);
+        }
+        int count = replacement.size;
+        int nodeDelta = count - (root - first + 1);
+        int tail = size - root - 1;
+        this.ensureCapacity(size + nodeDelta);
+        if (nodeDelta != 0) {
+            int target = root + 1 + nodeDelta;
+            System.arraycopy(kinds, root + 1, kinds, target, tail);
+            System.arraycopy(types, root + 1, types, target, tail);
+            System.arraycopy(flags, root + 1, flags, target, tail);
+            System.arraycopy(lefts, root + 1, lefts, target, tail);
+            System.arraycopy(rights, root + 1, rights, target, tail);
+            System.arraycopy(tokenIndexes, root + 1, tokenIndexes, target, tail);
+        }
+        for (int node = 0; node < count; node++) {
+            boolean leaf = replacement.isLeaf(node);
+            int left = replacement.lefts[node];
+            int right = replacement.rights[node];
+            this.write(first + node, replacement.kind(node), replacement.type(node), replacement.flags[node],
+                    leaf ? left : left + first, leaf || right == NONE ? right : right + first,
+                    replacement.tokenIndexes[node]);
+        }
+        size += nodeDelta;
+        int newRoot = first + count - 1;
+
+        for (int node = newRoot + 1; node < size; node++) {
+            if (tokenIndexes[node] >= tokenFrom) {
+                tokenIndexes[node] += tokenDelta;
+            }
+            if (!this.isLeaf(node)) {
+                lefts[node] = shiftChild(lefts[node], root, newRoot, nodeDelta);
+                rights[node] = shiftChild(rights[node], root, newRoot, nodeDelta);
+            }
+        }
+        return newRoot;
+    }
+
+    private static int shiftChild(int child, int root, int newRoot, int nodeDelta) {
+        if (child == root) return newRoot;
+        return child > root ? child + nodeDelta : child;
+    }
+
+    /**
+     * Копирует лист из другого дерева над тем же буфером токенов
+     */
+    public int copyLeaf(SyntaxTree source, int node) {
+        return this.append(source.kind(node), source.type(node), source.flags[node],
+                source.lefts[node], source.rights[node], source.tokenIndexes[node]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return индекс корня или {@link #NONE} для пустого дерева
+     */
+    public int root() {
+        return size - 1;
+    }
+
+    public NodeKind kind(int node) {
+        return KINDS[kinds[node]];
+    }
+
+    public VariableType type(int node) {
+        return VARIABLE_TYPES[types[node]];
+    }
+
+    public boolean isLeaf(int node) {
+        return this.kind(node).isLeaf();
+    }
+
+    /**
+     * Левый (или единственный) потомок операции
+     */
+    public int left(int node) {
+        return this.isLeaf(node) ? NONE : lefts[node];
+    }
+
+    public int right(int node) {
+        return this.isLeaf(node) ? NONE : rights[node];
+    }
+
+    /**
+     * @return индекс токена узла в буфере или {@link #NONE} (например, у Int2Float)
+     */
+    public int token(int node) {
+        return tokenIndexes[node];
+    }
+
+    public TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    public int symbolId(int node) {
+        return tokens.symbolId(tokenIndexes[node]);
+    }
+
+    /**
+     * @return false для целой константы вне диапазона long
+     */
+    public boolean hasValue(int node) {
+        return this.kind(node) == NodeKind.CONSTANT && (flags[node] & NO_VALUE) == 0;
+    }
+
+    /**
+     * @throws NumberFormatException если целая константа не помещается в long
+     */
+    public long integerValue(int node) {
+        if ((flags[node] & NO_VALUE) != 0) {
+            return Long.parseLong(tokens.text(tokenIndexes[node]));
+        }
+        return ((long) lefts[node] << 32) | (rights[node] & 0xFFFFFFFFL);
+    }
+
+    public double floatValue(int node) {
+        return Double.longBitsToDouble(this.integerValue(node));
+    }
+
+    /**
+     * Значение константы любого типа как double
+     */
+    public double numericValue(int node) {
+        if ((flags[node] & NO_VALUE) != 0) {
+            return Double.parseDouble(tokens.text(tokenIndexes[node]));
+        }
+        return this.type(node) == VariableType.FLOAT ? this.floatValue(node) : this.integerValue(node);
+    }
+
+    /**
+     * Подпись узла: текст операнда для листьев, знак операции или Int2Float для остальных
+     */
+    public String label(int node) {
+        NodeKind kind = this.kind(node);
+        if (!kind.isLeaf()) {
+            return kind.getLabel();
+        }
+        if ((flags[node] & SYNTHESIZED) != 0) {
+            return this.type(node) == VariableType.FLOAT
+                    ? formatFloat(this.floatValue(node))
+                    : Long.toString(this.integerValue(node));
+        }
+        return tokens.text(tokenIndexes[node]);
+    }
+
+    /**
+     * Записывает вещественную константу без экспоненты и всегда с точкой, как ее записал бы пользователь
+     */
+    public static String formatFloat(double value) {
+        String literal = BigDecimal.valueOf(value).toPlainString();
+        return literal.indexOf('.') >= 0 ? literal : literal + ".0";
+    }
+
+    /**
+     * Родитель каждого узла; у корня {@link #NONE}
+     */
+    public int[] parents() {
+        int[] parents = new int[size];
+        Arrays.fill(parents, NONE);
+        for (int node = 0; node < size; node++) {
+            if (this.isLeaf(node)) continue;
+            parents[lefts[node]] = node;
+            if (rights[node] != NONE) {
+                parents[rights[node]] = node;
+            }
+        }
+        return parents;
+    }
+
+    /**
+     * Оставляет только узлы, достижимые из root (например, после упрощения, отбросившего поддеревья).
+     * Порядок оставшихся узлов сохраняется, поэтому root становится последним
+     * @return это же дерево, если лишних узлов нет, иначе новое
+     */
+    public SyntaxTree compact(int root) {
+        if (root == NONE) {
+            return new SyntaxTree(tokens);
+        }
+        boolean[] reachable = new boolean[root + 1];
+        reachable[root] = true;
+        int count = 0;
+        // Родитель всегда правее потомков: один проход справа налево отмечает все поддерево
+        for (int node = root; node >= 0; node--) {
+            if (!reachable[node]) continue;
+            count++;
+            if (this.isLeaf(node)) continue;
+            reachable[lefts[node]] = true;
+            if (rights[node] != NONE) {
+                reachable[rights[node]] = true;
+            }
+        }
+        if (count == size) {
+            return this;
+        }
+
+        SyntaxTree result = new SyntaxTree(tokens, count);
+        int[] mapped = new int[root + 1];
+        for (int node = 0; node <= root; node++) {
+            if (!reachable[node]) continue;
+            if (this.isLeaf(node)) {
+                mapped[node] = result.copyLeaf(this, node);
+            } else {
+                int right = rights[node] != NONE ? mapped[rights[node]] : NONE;
+                mapped[node] = result.append(this.kind(node), this.type(node), flags[node],
+                        mapped[lefts[node]], right, tokenIndexes[node]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Строит дерево в массивах по дереву из объектов (токены переносятся в новый буфер).
+     * Операция определяется по значению узла: токен операции нужен только ради позиции
+     */
+    public static SyntaxTree of(SyntaxTreeNode root) {
+        List<SyntaxTreeNode> nodes = SyntaxTreeTraversal.postOrder(root);
+        TokenBuffer buffer = new TokenBuffer();
+        SyntaxTree tree = new SyntaxTree(buffer, nodes.size());
+        // Потомки в обратном обходе стоят прямо перед родителем: их индексы — на вершине стека
+        int[] stack = new int[nodes.size()];
+        int depth = 0;
+        for (SyntaxTreeNode node : nodes) {
+            int childCount = node.getChildren().size();
+            LexcialObject token = node.getNode();
+            int tokenIndex = token != null ? buffer.add(token) : NONE;
+            int index;
+            if (childCount == 0) {
+                if (tokenIndex == NONE) {
+                    throw new IllegalArgumentException("Неизвестный операнд: " + node.getValue());
+                }
+                index = tree.addLeaf(tokenIndex);
+            } else if (childCount == 1) {
+                NodeKind kind = "Int2Float".equals(node.getValue()) ? NodeKind.INT_TO_FLOAT : NodeKind.NEGATE;
+                index = tree.addOperation(kind, tokenIndex, stack[--depth], NONE);
+            } else {
+                NodeKind kind = NodeKind.binary(node.getValue());
+                if (childCount != 2 || kind == null) {
+                    throw new IllegalArgumentException("Неизвестная операция: " + node.getValue());
+                }
+                int right = stack[--depth];
+                int left = stack[--depth];
+                index = tree.addOperation(kind, tokenIndex, left, right);
+            }
+            stack[depth++] = index;
+        }
+        return tree;
+    }
+
+    /**
+     * Строит дерево из объектов
+     * @return корень или null для пустого дерева
+     */
+    public SyntaxTreeNode toNode() {
+        SyntaxTreeNode[] nodes = new SyntaxTreeNode[size];
+        for (int node = 0; node < size; node++) {
+            SyntaxTreeNode treeNode = new SyntaxTreeNode(this.label(node), this.createToken(node));
+            if (!this.isLeaf(node)) {
+                treeNode.children.add(nodes[lefts[node]]);
+                if (rights[node] != NONE) {
+                    treeNode.children.add(nodes[rights[node]]);
+                }
+            }
+            nodes[node] = treeNode;
+        }
+        return size > 0 ? nodes[size - 1] : null;
+    }
+
+    private LexcialObject createToken(int node) {
+        int tokenIndex = tokenIndexes[node];
+        if ((flags[node] & SYNTHESIZED) != 0) {
+            int position = tokenIndex != NONE ? tokens.position(tokenIndex) : 0;
+            return LexicalObjectsFactory.createLexicalObject(this.label(node), position, TypeDetector.NUMBER);
+        }
+        return tokenIndex != NONE ? tokens.get(tokenIndex) : null;
+    }
+
+    private VariableType inferType(NodeKind kind, int left, int right) {
+        if (kind == NodeKind.INT_TO_FLOAT) {
+            return VariableType.FLOAT;
+        }
+        if (this.type(left) == VariableType.FLOAT || (right != NONE && this.type(right) == VariableType.FLOAT)) {
+            return VariableType.FLOAT;
+        }
+        return VariableType.INTEGER;
+    }
+
+    private void writeLeaf(int node, int tokenIndex) {
+        TokenKind tokenKind = tokens.kind(tokenIndex);
+        if (tokenKind == TokenKind.IDENTIFIER) {
+            this.write(node, NodeKind.IDENTIFIER, tokens.variableType(tokenIndex), (byte) 0, NONE, NONE, tokenIndex);
+            return;
+        }
+        if (tokenKind != TokenKind.NUMBER) {
+            throw new IllegalArgumentException("Токен не может быть операндом: " + tokens.text(tokenIndex));
+        }
+        VariableType type = tokens.variableType(tokenIndex);
+        if (!tokens.hasLiteralValue(tokenIndex)) {
+            this.write(node, NodeKind.CONSTANT, type, NO_VALUE, NONE, NONE, tokenIndex);
+            return;
+        }
+        long bits = type == VariableType.FLOAT
+                ? Double.doubleToRawLongBits(tokens.floatValue(tokenIndex))
+                : tokens.integerValue(tokenIndex);
+        this.write(node, NodeKind.CONSTANT, type, (byte) 0, (int) (bits >>> 32), (int) bits, tokenIndex);
+    }
+
+    private int appendConstant(VariableType type, byte flag, long bits, int tokenIndex) {
+        return this.append(NodeKind.CONSTANT, type, flag, (int) (bits >>> 32), (int) bits, tokenIndex);
+    }
+
+    private int append(NodeKind kind, VariableType type, byte flag, int left, int right, int tokenIndex) {
+        this.ensureCapacity(size + 1);
+        this.write(size, kind, type, flag, left, right, tokenIndex);
+        return size++;
+    }
+
+    private void write(int node, NodeKind kind, VariableType type, byte flag, int left, int right, int tokenIndex) {
+        kinds[node] = (byte) kind.ordinal();
+        types[node] = (byte) (type != null ? type : VariableType.INTEGER).ordinal();
+        flags[node] = flag;
+        lefts[node] = left;
+        rights[node] = right;
+        tokenIndexes[node] = tokenIndex;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= kinds.length) return;
+        capacity = Math.max(capacity, kinds.length + (kinds.length >> 1));
+        kinds = Arrays.copyOf(kinds, capacity);
+        types = Arrays.copyOf(types, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        lefts = Arrays.copyOf(lefts, capacity);
+        rights = Arrays.copyOf(rights, capacity);
+        tokenIndexes = Arrays.copyOf(tokenIndexes, capacity);
+    }
+}
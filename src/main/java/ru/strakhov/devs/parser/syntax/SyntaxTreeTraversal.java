@@ -0,0 +1,35 @@
+package ru.strakhov.devs.parser.syntax;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Обход синтаксического дерева без рекурсии: глубина дерева ограничена только кучей,
+ * а не стеком потока
+ */
+public class SyntaxTreeTraversal {
+
+    /**
+     * Возвращает узлы в обратном порядке: потомки слева направо, затем родитель
+     */
+    public static List<SyntaxTreeNode> postOrder(SyntaxTreeNode root) {
+        List<SyntaxTreeNode> nodes = new ArrayList<>();
+        if (root == null) return nodes;
+
+        // Корень, правый потомок, левый — и переворот списка
+        Deque<SyntaxTreeNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            SyntaxTreeNode node = stack.pop();
+            nodes.add(node);
+            for (SyntaxTreeNode child : node.getChildren()) {
+                stack.push(child);
+            }
+        }
+        Collections.reverse(nodes);
+        return nodes;
+    }
+}
@@ -0,0 +1,190 @@
+package ru.strakhov.devs.starter;
+
+import ru.strakhov.devs.cache.CompilationCache;
+import ru.strakhov.devs.manager.BufferedOutputSink;
+import ru.strakhov.devs.manager.DirectoryOutputSink;
+import ru.strakhov.devs.manager.OutputSink;
+import ru.strakhov.devs.manager.StreamOutputSink;
+import ru.strakhov.devs.stats.PipelineStats;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Пакетная обработка: много выражений за один запуск JVM.
+ * Входной файл содержит по одному выражению в строке; строка вида «@путь»
+ * ссылается на файл с выражением (путь считается от каталога входного файла).
+ * Пустые строки пропускаются.
+ * <p>
+ * Выражения независимы, поэтому обрабатываются параллельно в {@link ForkJoinPool}:
+ * у каждого задания свой лексический анализатор и свои таблицы символов.
+ * Вход читается блоками; результаты блока выводятся строго в порядке выражений.
+ */
+public class BatchProcessor {
+    public static final String ERROR_FILE = "error.txt";
+    private static final String MANIFEST_PREFIX = "@";
+    private static final int BLOCK_SIZE = 4096;
+
+    private final ExpressionProcessor expressionProcessor = new ExpressionProcessor();
+    private final int parallelism;
+    private int processedCount;
+    private int failedCount;
+
+    public BatchProcessor(String mode) {
+        this(mode, 1);
+    }
+
+    public BatchProcessor(String mode, int parallelism) {
+        expressionProcessor.setCurrentMode(mode);
+        this.parallelism = parallelism;
+    }
+
+    public void setStats(PipelineStats stats) {
+        expressionProcessor.setStats(stats);
+    }
+
+    /**
+     * Повторяющиеся выражения пакета берутся из кэша, а не компилируются заново
+     */
+    public void setCache(CompilationCache cache) {
+        expressionProcessor.setCache(cache);
+    }
+
+    /**
+     * @param outputDirectory каталог для пронумерованных подкаталогов с результатами;
+     *                        если null, все результаты пишутся в output с заголовками
+     */
+    public void run(String batchFileName, String outputDirectory, Writer output) throws IOException {
+        Path batchDirectory = Paths.get(batchFileName).toAbsolutePath().getParent();
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(batchFileName), StandardCharsets.UTF_8)) {
+            List<String> block = new ArrayList<>(BLOCK_SIZE);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                block.add(line);
+                if (block.size() == BLOCK_SIZE) {
+                    this.processBlock(pool, block, batchDirectory, outputDirectory, output);
+                    block.clear();
+                }
+            }
+            this.processBlock(pool, block, batchDirectory, outputDirectory, output);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        output.flush();
+    }
+
+    private void processBlock(ForkJoinPool pool, List<String> block, Path batchDirectory,
+                              String outputDirectory, Writer output) {
+        int firstIndex = processedCount + 1;
+        OutputSink[] sinks = new OutputSink[block.size()];
+        for (int i = 0; i < sinks.length; i++) {
+            // Каталоги у выражений разные, поэтому в них можно писать сразу;
+            // общий поток заполняется только после обработки всего блока
+            sinks[i] = outputDirectory != null
+                    ? this.createSink(firstIndex + i, outputDirectory, output)
+                    : new BufferedOutputSink();
+        }
+        boolean[] failed = new boolean[block.size()];
+
+        BlockTask task = new BlockTask(block, batchDirectory, sinks, failed, 0, block.size());
+        if (pool != null) {
+            pool.invoke(task);
+        } else {
+            task.compute();
+        }
+
+        for (int i = 0; i < sinks.length; i++) {
+            if (outputDirectory == null) {
+                ((BufferedOutputSink) sinks[i]).replayTo(this.createSink(firstIndex + i, null, output));
+            }
+            if (failed[i]) {
+                failedCount++;
+            }
+        }
+        processedCount += block.size();
+    }
+
+    private OutputSink createSink(int index, String outputDirectory, Writer output) {
+        if (outputDirectory != null) {
+            return new DirectoryOutputSink(Paths.get(outputDirectory, String.format("%05d", index)).toString());
+        }
+        return new StreamOutputSink(output, "#" + index);
+    }
+
+    /**
+     * @return true, если выражение обработано без ошибок
+     */
+    private boolean processEntry(String line, Path batchDirectory, OutputSink sink) {
+        try {
+            if (line.startsWith(MANIFEST_PREFIX)) {
+                String inputFileName = batchDirectory.resolve(line.substring(MANIFEST_PREFIX.length()).trim()).toString();
+                expressionProcessor.processFile(inputFileName, sink,
+                        ExpressionProcessor.TOKENS_FILE, ExpressionProcessor.SYMBOLS_FILE);
+            } else {
+                expressionProcessor.process(line, sink,
+                        ExpressionProcessor.TOKENS_FILE, ExpressionProcessor.SYMBOLS_FILE);
+            }
+            return true;
+        } catch (RuntimeException | IOException e) {
+            // Ошибка в одном выражении не должна останавливать весь пакет
+            sink.write(ERROR_FILE, (e.getMessage() != null ? e.getMessage() : e.toString()) + "\n");
+            return false;
+        }
+    }
+
+    public int getProcessedCount() {
+        return processedCount;
+    }
+
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Делит блок пополам до отдельных выражений: размеры выражений сильно различаются,
+     * и мелкие задания позволяют свободным потокам «воровать» работу у занятых
+     */
+    private class BlockTask extends RecursiveAction {
+        private final List<String> block;
+        private final Path batchDirectory;
+        private final OutputSink[] sinks;
+        private final boolean[] failed;
+        private final int from;
+        private final int to;
+
+        BlockTask(List<String> block, Path batchDirectory, OutputSink[] sinks, boolean[] failed, int from, int to) {
+            this.block = block;
+            this.batchDirectory = batchDirectory;
+            this.sinks = sinks;
+            this.failed = failed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1 || parallelism <= 1) {
+                for (int i = from; i < to; i++) {
+                    failed[i] = !processEntry(block.get(i), batchDirectory, sinks[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BlockTask(block, batchDirectory, sinks, failed, from, middle),
+                    new BlockTask(block, batchDirectory, sinks, failed, middle, to));
+        }
+    }
+}
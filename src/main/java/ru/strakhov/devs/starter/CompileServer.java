@@ -0,0 +1,192 @@
+package ru.strakhov.devs.starter;
+
+import ru.strakhov.devs.analyzer.IncrementalCompiler;
+import ru.strakhov.devs.cache.CompilationCache;
+import ru.strakhov.devs.manager.BufferedOutputSink;
+import ru.strakhov.devs.manager.StreamOutputSink;
+import ru.strakhov.devs.stats.PipelineStats;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Долгоживущий сервер компиляции: JVM запускается и прогревается один раз,
+ * а выражения приходят построчно через stdin/stdout или Unix domain socket.
+ * <p>
+ * Запрос — одна строка «&lt;режим&gt; &lt;выражение&gt;», режимы те же, что у Main.
+ * Запрос «edit &lt;режим&gt; &lt;позиция&gt; &lt;удалено символов&gt; &lt;вставка&gt;» правит последнее
+ * выражение сессии; заново читаются и разбираются только затронутые правкой токены.
+ * Ответ — результаты стадий в формате {@link StreamOutputSink} с меткой «ok»
+ * или «error», завершенные строкой «### end». Строка «quit» закрывает сессию.
+ */
+public class CompileServer {
+    public static final String END_MARKER = "### end";
+    private static final String QUIT_COMMAND = "quit";
+    private static final String EDIT_COMMAND = "edit";
+    private static final String WARM_UP_EXPRESSION = "var1[i] + var2[f] * 60 + var3/5 -4";
+    private static final int WARM_UP_ITERATIONS = 2000;
+
+    private final Map<String, ExpressionProcessor> processors = new LinkedHashMap<>();
+
+    public CompileServer() {
+        for (String mode : new String[]{"lex", "syn", "sem", "gen1", "gen2", "all"}) {
+            ExpressionProcessor expressionProcessor = new ExpressionProcessor();
+            expressionProcessor.setCurrentMode(mode);
+            processors.put(mode, expressionProcessor);
+        }
+    }
+
+    /**
+     * Прогоняет все режимы на небольшом выражении, чтобы JIT скомпилировал
+     * горячие пути до прихода первого настоящего запроса
+     */
+    public void warmUp() {
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            for (ExpressionProcessor expressionProcessor : processors.values()) {
+                expressionProcessor.process(WARM_UP_EXPRESSION, new BufferedOutputSink(),
+                        ExpressionProcessor.TOKENS_FILE, ExpressionProcessor.SYMBOLS_FILE);
+            }
+        }
+    }
+
+    /**
+     * Включает счетчики стадий для всех режимов; прогрев лучше выполнить до этого,
+     * чтобы он не попал в статистику
+     */
+    public void setStats(PipelineStats stats) {
+        for (ExpressionProcessor expressionProcessor : processors.values()) {
+            expressionProcessor.setStats(stats);
+        }
+    }
+
+    /**
+     * Общий для всех режимов и сессий кэш результатов; правки документа идут мимо него
+     */
+    public void setCache(CompilationCache cache) {
+        for (ExpressionProcessor expressionProcessor : processors.values()) {
+            expressionProcessor.setCache(cache);
+        }
+    }
+
+    /**
+     * Обслуживает одну сессию до конца входа или команды «quit»
+     */
+    public void serve(BufferedReader in, Writer out) throws IOException {
+        Session session = new Session();
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isBlank()) continue;
+            if (line.trim().equalsIgnoreCase(QUIT_COMMAND)) break;
+            this.handleRequest(session, line, out);
+            out.flush();
+        }
+        out.flush();
+    }
+
+    /**
+     * Принимает подключения на Unix domain socket; каждое подключение — отдельная сессия
+     */
+    public void serveUnixSocket(Path socketPath) throws IOException {
+        Files.deleteIfExists(socketPath);
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "compile-session");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            while (server.isOpen()) {
+                SocketChannel client = server.accept();
+                executor.execute(() -> this.serveClient(client));
+            }
+        } finally {
+            executor.shutdownNow();
+            Files.deleteIfExists(socketPath);
+        }
+    }
+
+    private void serveClient(SocketChannel client) {
+        try (client;
+             BufferedReader in = new BufferedReader(Channels.newReader(client, StandardCharsets.UTF_8));
+             Writer out = Channels.newWriter(client, StandardCharsets.UTF_8)) {
+            this.serve(in, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка сессии сервера компиляции", e);
+        }
+    }
+
+    private void handleRequest(Session session, String line, Writer out) throws IOException {
+        int separator = line.indexOf(' ');
+        String mode = (separator < 0 ? line : line.substring(0, separator)).trim().toLowerCase();
+        String expression = separator < 0 ? "" : line.substring(separator + 1);
+        String[] edit = null;
+        if (mode.equals(EDIT_COMMAND)) {
+            // edit <режим> <позиция> <удалено> <вставка>: вставка — весь остаток строки, может быть пустой
+            edit = expression.split(" ", 4);
+            mode = edit[0].trim().toLowerCase();
+        }
+
+        // Результат сначала собирается целиком, чтобы при ошибке не отдать клиенту половину ответа
+        BufferedOutputSink result = new BufferedOutputSink();
+        String status = "ok";
+        ExpressionProcessor expressionProcessor = processors.get(mode);
+        if (expressionProcessor == null) {
+            status = "error";
+            result.write(BatchProcessor.ERROR_FILE, "Invalid mode. Use LEX, SYN, SEM, GEN1, GEN2, or ALL:)\n");
+        } else {
+            try {
+                if (edit == null) {
+                    session.document = new IncrementalCompiler(expression);
+                    expressionProcessor.process(expression, result,
+                            ExpressionProcessor.TOKENS_FILE, ExpressionProcessor.SYMBOLS_FILE);
+                } else {
+                    this.handleEdit(session, edit, expressionProcessor, result);
+                }
+            } catch (RuntimeException e) {
+                status = "error";
+                result = new BufferedOutputSink();
+                result.write(BatchProcessor.ERROR_FILE, (e.getMessage() != null ? e.getMessage() : e.toString()) + "\n");
+            }
+        }
+
+        result.replayTo(new StreamOutputSink(out, status));
+        out.write(END_MARKER);
+        out.write('\n');
+    }
+
+    private void handleEdit(Session session, String[] edit, ExpressionProcessor expressionProcessor,
+                            BufferedOutputSink result) {
+        if (edit.length < 3) {
+            throw new IllegalArgumentException("Usage: edit <mode> <offset> <removed_length> [text]");
+        }
+        if (session.document == null) {
+            throw new IllegalStateException("No expression to edit: send an expression first");
+        }
+        int offset = Integer.parseInt(edit[1].trim());
+        int removedLength = Integer.parseInt(edit[2].trim());
+        String insertedText = edit.length > 3 ? edit[3] : "";
+        expressionProcessor.processEdit(session.document, offset, removedLength, insertedText, result,
+                ExpressionProcessor.TOKENS_FILE, ExpressionProcessor.SYMBOLS_FILE);
+    }
+
+    /**
+     * Состояние одного подключения: последнее выражение, к которому применяются правки
+     */
+    private static final class Session {
+        private IncrementalCompiler document;
+    }
+}
@@ -1,90 +1,247 @@
 package ru.strakhov.devs.starter;
 
+import ru.strakhov.devs.analyzer.CompilationUnit;
+import ru.strakhov.devs.analyzer.IncrementalCompiler;
 import ru.strakhov.devs.analyzer.LexicalAnalyzer;
-import ru.strakhov.devs.analyzer.SemanticAnalyzer;
+import ru.strakhov.devs.cache.CachedOutput;
+import ru.strakhov.devs.cache.CompilationCache;
 import ru.strakhov.devs.generator.PostfixCodeGenerator;
 import ru.strakhov.devs.generator.ThreeAddressCodeGenerator;
-import ru.strakhov.devs.lexical_object.entity.LexcialObject;
+import ru.strakhov.devs.lexical_object.entity.TokenBuffer;
+import ru.strakhov.devs.manager.BufferedOutputSink;
+import ru.strakhov.devs.manager.CountingWriter;
+import ru.strakhov.devs.manager.DirectoryOutputSink;
 import ru.strakhov.devs.manager.IOFileManager;
-import ru.strakhov.devs.parser.syntax.SyntaxParser;
-import ru.strakhov.devs.parser.syntax.SyntaxTreeNode;
+import ru.strakhov.devs.manager.OutputSink;
+import ru.strakhov.devs.manager.TextEmitter;
+import ru.strakhov.devs.parser.syntax.SyntaxTree;
+import ru.strakhov.devs.stats.PipelineStats;
+import ru.strakhov.devs.stats.Stage;
+import ru.strakhov.devs.stats.StageTimer;
 import ru.strakhov.devs.visualizer.TreeVisualizer;
 
 import java.io.IOException;
-import java.util.List;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 public class ExpressionProcessor {
+    public static final String TOKENS_FILE = "tokens.txt";
+    public static final String SYMBOLS_FILE = "symbols.txt";
+    public static final String SYNTAX_TREE_FILE = "syntax_tree.txt";
+    public static final String SEMANTIC_TREE_FILE = "syntax_tree_mod.txt";
+    public static final String THREE_ADDRESS_CODE_FILE = "portable_code.txt";
+    public static final String POSTFIX_FILE = "postfix.txt";
+    public static final String THREE_ADDRESS_SYMBOLS_FILE = "portable_code_symbols.txt";
+    public static final String POSTFIX_SYMBOLS_FILE = "postfix_symbols.txt";
+
+    private static final long MAPPED_INPUT_THRESHOLD = 16L * 1024 * 1024;
+
     private String currentMode;
+    private OutputSink outputSink = new DirectoryOutputSink();
+    private PipelineStats stats = PipelineStats.DISABLED;
+    private CompilationCache cache;
 
     public void setCurrentMode(String currentMode) {
         this.currentMode = currentMode;
     }
 
+    public void setOutputSink(OutputSink outputSink) {
+        this.outputSink = outputSink;
+    }
+
+    /**
+     * Включает подсчет времени, памяти и объема работы по стадиям; счетчики можно
+     * разделять между процессорами и потоками
+     */
+    public void setStats(PipelineStats stats) {
+        this.stats = stats;
+    }
+
+    public PipelineStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Включает кэш результатов для повторяющихся выражений; null выключает его.
+     * Кэш можно разделять между процессорами разных режимов и потоками
+     */
+    public void setCache(CompilationCache cache) {
+        this.cache = cache;
+    }
+
+    public CompilationCache getCache() {
+        return cache;
+    }
+
     public void start(String inputFileName, String tokensFile, String symbolsFile) throws IOException {
-        String fileExpression = IOFileManager.readFile(inputFileName);
-        LexicalAnalyzer lexicalAnalyzer = new LexicalAnalyzer();
-        List<LexcialObject> tokens = lexicalAnalyzer.getTokens(fileExpression);
+        this.processFile(inputFileName, outputSink, tokensFile, symbolsFile);
+    }
 
+    /**
+     * Обрабатывает выражение из файла и отдает результаты текущего режима в sink
+     */
+    public void processFile(String inputFileName, OutputSink sink, String tokensFile, String symbolsFile) throws IOException {
+        if (cache != null && Files.size(Paths.get(inputFileName)) <= CompilationCache.MAX_EXPRESSION_LENGTH) {
+            // Небольшой файл читается целиком, чтобы по его тексту найти результат в кэше
+            this.process(Files.readString(Paths.get(inputFileName), StandardCharsets.UTF_8), sink, tokensFile, symbolsFile);
+            return;
+        }
+        boolean failed = true;
+        try {
+            LexicalAnalyzer lexicalAnalyzer = new LexicalAnalyzer();
+            StageTimer timer = stats.start(Stage.LEX);
+            TokenBuffer tokens = this.readTokens(lexicalAnalyzer, inputFileName);
+            timer.stop(tokens.size());
+            this.runStages(new CompilationUnit(lexicalAnalyzer, tokens), sink, tokensFile, symbolsFile);
+            failed = false;
+        } finally {
+            stats.recordExpression(failed);
+        }
+    }
+
+    /**
+     * Обрабатывает выражение, уже находящееся в памяти
+     */
+    public void process(CharSequence expression, OutputSink sink, String tokensFile, String symbolsFile) {
+        boolean failed = true;
+        try {
+            if (cache != null && CompilationCache.isCacheable(expression)) {
+                this.processCached(expression, sink, tokensFile, symbolsFile);
+            } else {
+                this.runStages(new CompilationUnit(expression), sink, tokensFile, symbolsFile);
+            }
+            failed = false;
+        } finally {
+            stats.recordExpression(failed);
+        }
+    }
+
+    /**
+     * Применяет правку к выражению документа и обрабатывает результат: заново читаются
+     * и разбираются только затронутые правкой токены
+     */
+    public void processEdit(IncrementalCompiler document, int offset, int removedLength, CharSequence insertedText,
+                            OutputSink sink, String tokensFile, String symbolsFile) {
+        boolean failed = true;
+        try {
+            document.setStats(stats);
+            document.edit(offset, removedLength, insertedText);
+            this.runStages(document.getCompilationUnit(), sink, tokensFile, symbolsFile);
+            failed = false;
+        } finally {
+            stats.recordExpression(failed);
+        }
+    }
+
+    /**
+     * Отдает результаты из кэша, а при промахе компилирует выражение и кэширует результаты.
+     * При ошибке компиляции в sink ничего не попадает, и кэш не меняется
+     */
+    private void processCached(CharSequence expression, OutputSink sink, String tokensFile, String symbolsFile) {
+        String key = CompilationCache.key(currentMode, tokensFile, symbolsFile, expression);
+        CachedOutput output = cache.get(key);
+        if (output == null) {
+            BufferedOutputSink result = new BufferedOutputSink();
+            this.runStages(new CompilationUnit(expression), result, tokensFile, symbolsFile);
+            output = CachedOutput.of(result);
+            cache.put(key, output);
+        }
+        output.replayTo(sink);
+    }
+
+    private void runStages(CompilationUnit unit, OutputSink sink, String tokensFile, String symbolsFile) {
+        unit.setStats(stats);
         if (currentMode.equals("lex")) {
-            this.createLexicalFiles(lexicalAnalyzer, tokens, tokensFile, symbolsFile);
+            this.createLexicalFiles(unit, sink, tokensFile, symbolsFile);
         } else if (currentMode.equals("syn")) {
-            this.createSyntaxTreeFile(tokens);
+            this.createSyntaxTreeFile(unit, sink);
         } else if (currentMode.equals("sem")) {
-            this.createSemanticTreeFile(lexicalAnalyzer, tokens);
+            this.createSemanticTreeFile(unit, sink);
         } else if (currentMode.equals("gen1")) {
-            this.createThreeAddressCode(lexicalAnalyzer, tokens);
+            this.createThreeAddressCode(unit, sink, SYMBOLS_FILE);
         } else if (currentMode.equals("gen2")) {
-            this.createPostfixCode(lexicalAnalyzer, tokens);
+            this.createPostfixCode(unit, sink, SYMBOLS_FILE);
+        } else if (currentMode.equals("all")) {
+            // Все стадии за один проход: каждое представление строится один раз.
+            // Таблицы символов генераторов пишутся в отдельные файлы, чтобы не затереть лексическую
+            this.createLexicalFiles(unit, sink,
+                    tokensFile != null ? tokensFile : TOKENS_FILE,
+                    symbolsFile != null ? symbolsFile : SYMBOLS_FILE);
+            this.createSyntaxTreeFile(unit, sink);
+            this.createSemanticTreeFile(unit, sink);
+            this.createThreeAddressCode(unit, sink, THREE_ADDRESS_SYMBOLS_FILE);
+            this.createPostfixCode(unit, sink, POSTFIX_SYMBOLS_FILE);
         }
     }
 
-    private void createSyntaxTreeFile(List<LexcialObject> tokens) throws IOException {
-        SyntaxParser parser = new SyntaxParser(tokens);
-        SyntaxTreeNode tree = parser.parseExpression();
-        parser.checkEnd();
-
-        TreeVisualizer.printTreeToFile(tree, "syntax_tree.txt");
+    /**
+     * Большие файлы сканируются напрямую из отображения в память, остальные — потоково
+     */
+    private TokenBuffer readTokens(LexicalAnalyzer lexicalAnalyzer, String inputFileName) throws IOException {
+        long size = Files.size(Paths.get(inputFileName));
+        if (size >= MAPPED_INPUT_THRESHOLD && size <= Integer.MAX_VALUE) {
+            return lexicalAnalyzer.tokenize(IOFileManager.mapFile(inputFileName));
+        }
+        try (Reader reader = IOFileManager.openReader(inputFileName)) {
+            return lexicalAnalyzer.tokenize(reader);
+        }
     }
 
-    private void createSemanticTreeFile(LexicalAnalyzer lexicalAnalyzer, List<LexcialObject> tokens) throws IOException {
-        SyntaxParser parser = new SyntaxParser(tokens);
-        SyntaxTreeNode tree = parser.parseExpression();
-        parser.checkEnd();
-
-        // Выполняем семантический анализ
-        SemanticAnalyzer semanticAnalyzer = new SemanticAnalyzer(lexicalAnalyzer);
-        SyntaxTreeNode modifiedTree = semanticAnalyzer.analyze(tree);
-
-        // Сохраняем модифицированное дерево
-        TreeVisualizer.printTreeToFile(modifiedTree, "syntax_tree_mod.txt");
+    private void createSyntaxTreeFile(CompilationUnit unit, OutputSink sink) {
+        SyntaxTree tree = unit.getSyntaxTree();
+        this.write(sink, SYNTAX_TREE_FILE, out -> TreeVisualizer.printTree(tree, out));
     }
 
-    private void createLexicalFiles(LexicalAnalyzer lexicalAnalyzer, List<LexcialObject> tokens , String tokensFile, String symbolsFile) throws IOException {
-        lexicalAnalyzer.createTokensFile(tokensFile, tokens);
-        lexicalAnalyzer.createSymbolsFile(symbolsFile, tokens);
+    private void createSemanticTreeFile(CompilationUnit unit, OutputSink sink) {
+        // Сохраняем дерево после семантического анализа
+        SyntaxTree tree = unit.getAnalyzedTree();
+        this.write(sink, SEMANTIC_TREE_FILE, out -> TreeVisualizer.printTree(tree, out));
     }
 
-    private void createThreeAddressCode(LexicalAnalyzer lexicalAnalyzer, List<LexcialObject> tokens) throws IOException {
-        SyntaxParser parser = new SyntaxParser(tokens);
-        SyntaxTreeNode tree = parser.parseExpression();
-        parser.checkEnd();
+    private void createLexicalFiles(CompilationUnit unit, OutputSink sink, String tokensFile, String symbolsFile) {
+        // Результаты пишутся в sink потоково, без промежуточной строки на весь файл
+        LexicalAnalyzer lexicalAnalyzer = unit.getLexicalAnalyzer();
+        TokenBuffer tokens = unit.getTokenBuffer();
+        this.write(sink, tokensFile, out -> lexicalAnalyzer.writeTokens(tokens, out));
+        this.write(sink, symbolsFile, lexicalAnalyzer::writeSymbols);
+    }
 
+    private void createThreeAddressCode(CompilationUnit unit, OutputSink sink, String symbolsFile) {
         // Генерируем трехадресный код
-        ThreeAddressCodeGenerator codeGenerator = new ThreeAddressCodeGenerator(lexicalAnalyzer);
-        codeGenerator.generate(tree);
-        codeGenerator.saveToFile("portable_code.txt");
-        codeGenerator.saveSymbolsToFile("symbols.txt");
+        // Анализ и упрощение дерева засчитываются в свои стадии, а не в генерацию
+        unit.getOptimizedTree();
+        StageTimer timer = stats.start(Stage.THREE_ADDRESS_CODE);
+        ThreeAddressCodeGenerator codeGenerator = new ThreeAddressCodeGenerator(unit.getLexicalAnalyzer());
+        codeGenerator.generate(unit);
+        timer.stop(codeGenerator.getInstructionCount());
+        this.write(sink, THREE_ADDRESS_CODE_FILE, codeGenerator::writeCode);
+        this.write(sink, symbolsFile, codeGenerator::writeSymbols);
     }
 
-    private void createPostfixCode(LexicalAnalyzer lexicalAnalyzer, List<LexcialObject> tokens) throws IOException {
-        SyntaxParser parser = new SyntaxParser(tokens);
-        SyntaxTreeNode tree = parser.parseExpression();
-        parser.checkEnd();
-
+    private void createPostfixCode(CompilationUnit unit, OutputSink sink, String symbolsFile) {
         // Генерируем постфиксную нотацию
-        PostfixCodeGenerator postfixGenerator = new PostfixCodeGenerator(lexicalAnalyzer);
-        postfixGenerator.generate(tree);
-        postfixGenerator.saveToFile("postfix.txt");
-        postfixGenerator.saveSymbolsToFile("symbols.txt");
+        unit.getOptimizedTree();
+        StageTimer timer = stats.start(Stage.POSTFIX);
+        PostfixCodeGenerator postfixGenerator = new PostfixCodeGenerator(unit.getLexicalAnalyzer());
+        postfixGenerator.generate(unit);
+        timer.stop(postfixGenerator.getTokenCount());
+        this.write(sink, POSTFIX_FILE, postfixGenerator::writeCode);
+        this.write(sink, symbolsFile, postfixGenerator::writeSymbols);
+    }
+
+    /**
+     * Отдает результат в sink, засчитывая форматирование и запись в стадию вывода
+     */
+    private void write(OutputSink sink, String fileName, TextEmitter emitter) {
+        StageTimer timer = stats.start(Stage.OUTPUT);
+        long[] written = new long[1];
+        sink.write(fileName, out -> {
+            CountingWriter counter = new CountingWriter(out);
+            emitter.emit(counter);
+            written[0] = counter.getCount();
+        });
+        timer.stop(written[0]);
     }
 }
@@ -0,0 +1,138 @@
+package ru.strakhov.devs.stats;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики стадий за весь запуск: число вызовов, время, выделенная память и число
+ * произведенных элементов. Потокобезопасны — пакетная обработка пишет в них из многих потоков.
+ * <p>
+ * {@link #DISABLED} ничего не считает: стадии при этом по-прежнему отдают события JFR.
+ */
+public class PipelineStats {
+    private static final Stage[] STAGES = Stage.values();
+
+    // Объявлен после STAGES: конструктору нужен уже заполненный массив стадий
+    public static final PipelineStats DISABLED = new PipelineStats(false);
+
+    private final boolean enabled;
+    private final long createdNanos = System.nanoTime();
+    private final LongAdder expressions = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder[] calls = adders();
+    private final LongAdder[] wallNanos = adders();
+    private final LongAdder[] allocatedBytes = adders();
+    private final LongAdder[] items = adders();
+
+    public PipelineStats() {
+        this(true);
+    }
+
+    private PipelineStats(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Начинает замер стадии в текущем потоке
+     */
+    public StageTimer start(Stage stage) {
+        return new StageTimer(this, stage);
+    }
+
+    public void recordExpression(boolean failed) {
+        if (!enabled) return;
+        expressions.increment();
+        if (failed) {
+            failures.increment();
+        }
+    }
+
+    void record(Stage stage, long wallNanos, long allocatedBytes, long items) {
+        int index = stage.ordinal();
+        this.calls[index].increment();
+        this.wallNanos[index].add(wallNanos);
+        this.allocatedBytes[index].add(allocatedBytes);
+        this.items[index].add(items);
+    }
+
+    public long getCalls(Stage stage) {
+        return calls[stage.ordinal()].sum();
+    }
+
+    public long getWallNanos(Stage stage) {
+        return wallNanos[stage.ordinal()].sum();
+    }
+
+    public long getAllocatedBytes(Stage stage) {
+        return allocatedBytes[stage.ordinal()].sum();
+    }
+
+    public long getItems(Stage stage) {
+        return items[stage.ordinal()].sum();
+    }
+
+    /**
+     * Сводка в одну строку JSON. Время стадий суммируется по потокам, поэтому при
+     * параллельной обработке может превышать общее время запуска (wallNanos)
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"expressions\":").append(expressions.sum())
+                .append(",\"failed\":").append(failures.sum())
+                .append(",\"wallNanos\":").append(System.nanoTime() - createdNanos)
+                .append(",\"allocationMeasured\":").append(Allocation.THREAD_MX_BEAN != null)
+                .append(",\"stages\":[");
+        boolean first = true;
+        for (Stage stage : STAGES) {
+            if (this.getCalls(stage) == 0) continue;
+            if (!first) json.append(',');
+            first = false;
+            json.append("{\"stage\":\"").append(stage.getLabel())
+                    .append("\",\"calls\":").append(this.getCalls(stage))
+                    .append(",\"wallNanos\":").append(this.getWallNanos(stage))
+                    .append(",\"allocatedBytes\":").append(this.getAllocatedBytes(stage))
+                    .append(",\"items\":").append(this.getItems(stage))
+                    .append(",\"unit\":\"").append(stage.getUnit())
+                    .append("\"}");
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Байты, выделенные текущим потоком с его запуска; 0, если JVM этого не поддерживает
+     */
+    static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean = Allocation.THREAD_MX_BEAN;
+        return bean != null ? bean.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * JMX загружается при первом замере памяти, а не при старте: без --stats и JFR он не нужен
+     */
+    private static final class Allocation {
+        static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = threadMXBean();
+
+        private static com.sun.management.ThreadMXBean threadMXBean() {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                    && bean.isThreadAllocatedMemorySupported()) {
+                if (!bean.isThreadAllocatedMemoryEnabled()) {
+                    bean.setThreadAllocatedMemoryEnabled(true);
+                }
+                return bean;
+            }
+            return null;
+        }
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[STAGES.length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.strakhov.devs.stats;
+
+/**
+ * Стадия обработки выражения и единица того, что она производит
+ */
+public enum Stage {
+    /** Чтение входа и лексический анализ: файл сканируется потоково, поэтому стадии не разделяются */
+    LEX("lex", "tokens"),
+    PARSE("parse", "nodes"),
+    SEMANTIC("semantic", "nodes"),
+    OPTIMIZE("optimize", "nodes"),
+    THREE_ADDRESS_CODE("gen1", "instructions"),
+    POSTFIX("gen2", "tokens"),
+    /** Форматирование и запись результатов в sink */
+    OUTPUT("output", "chars");
+
+    private final String label;
+    private final String unit;
+
+    Stage(String label, String unit) {
+        this.label = label;
+        this.unit = unit;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+}
@@ -0,0 +1,34 @@
+package ru.strakhov.devs.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR для одной стадии одного выражения. Пока запись JFR не включена,
+ * событие почти ничего не стоит; включается обычным -XX:StartFlightRecording
+ */
+@Name("ru.strakhov.devs.Stage")
+@Label("Compiler Stage")
+@Category({"Expression Compiler"})
+@Description("Стадия обработки выражения: время, число произведенных элементов и выделенная память")
+@StackTrace(false)
+class StageEvent extends Event {
+    @Label("Stage")
+    String stage;
+
+    @Label("Items")
+    @Description("Токены, узлы, инструкции или символы — в зависимости от стадии")
+    long items;
+
+    @Label("Unit")
+    String unit;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
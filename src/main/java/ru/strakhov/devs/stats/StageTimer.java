@@ -0,0 +1,52 @@
+package ru.strakhov.devs.stats;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Замер одной стадии: создается в {@link PipelineStats#start}, завершается {@link #stop}.
+ * Если стадия упала с исключением, замер просто не завершается
+ */
+public final class StageTimer {
+    private final PipelineStats stats;
+    private final Stage stage;
+    private final StageEvent event;
+    private final boolean measureAllocation;
+    private final long startNanos;
+    private final long startAllocated;
+
+    StageTimer(PipelineStats stats, Stage stage) {
+        this.stats = stats;
+        this.stage = stage;
+        // Пока JFR не запущен (флагом или через jcmd), классы событий не загружаются:
+        // их первая загрузка инициализирует весь JFR и заметно замедляет старт
+        this.event = FlightRecorder.isInitialized() ? new StageEvent() : null;
+        // Счетчик выделенной памяти читается, только если результат кому-то нужен
+        this.measureAllocation = stats.isEnabled() || (event != null && event.isEnabled());
+        this.startAllocated = measureAllocation ? PipelineStats.allocatedBytes() : 0;
+        if (event != null) {
+            event.begin();
+        }
+        this.startNanos = stats.isEnabled() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @param items сколько стадия произвела (в единицах {@link Stage#getUnit()})
+     */
+    public void stop(long items) {
+        long wallNanos = stats.isEnabled() ? System.nanoTime() - startNanos : 0;
+        long allocated = measureAllocation ? PipelineStats.allocatedBytes() - startAllocated : 0;
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.stage = stage.getLabel();
+                event.unit = stage.getUnit();
+                event.items = items;
+                event.allocatedBytes = allocated;
+                event.commit();
+            }
+        }
+        if (stats.isEnabled()) {
+            stats.record(stage, wallNanos, allocated, items);
+        }
+    }
+}
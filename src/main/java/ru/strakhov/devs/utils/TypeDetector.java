@@ -1,23 +1,34 @@
 package ru.strakhov.devs.utils;
 
 import ru.strakhov.devs.lexical_object.abstractions.LexicalObjectType;
+import ru.strakhov.devs.lexical_object.entity.TokenKind;
 import ru.strakhov.devs.lexical_object.type.*;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class TypeDetector {
+    public static final LexicalObjectType OPEN_BRACKET = new OpenBracketType();
+    public static final LexicalObjectType CLOSE_BRACKET = new CloseBracketType();
+    public static final LexicalObjectType PLUS = new PlusType();
+    public static final LexicalObjectType MINUS = new MinusType();
+    public static final LexicalObjectType MULTIPLY = new MultiplyType();
+    public static final LexicalObjectType DIVIDE = new DivideType();
+    public static final LexicalObjectType NUMBER = new NumberType();
+    public static final LexicalObjectType IDENTIFIER = new IdentifierType();
+    public static final LexicalObjectType UNKNOWN = new UnknownType();
+
     private static final List<LexicalObjectType> TYPES = new ArrayList<>();
     static {
-        TYPES.add(new OpenBracketType());
-        TYPES.add(new CloseBracketType());
-        TYPES.add(new PlusType());
-        TYPES.add(new MinusType());
-        TYPES.add(new MultiplyType());
-        TYPES.add(new DivideType());
-        TYPES.add(new NumberType());
-        TYPES.add(new IdentifierType());
-        TYPES.add(new UnknownType());
+        TYPES.add(OPEN_BRACKET);
+        TYPES.add(CLOSE_BRACKET);
+        TYPES.add(PLUS);
+        TYPES.add(MINUS);
+        TYPES.add(MULTIPLY);
+        TYPES.add(DIVIDE);
+        TYPES.add(NUMBER);
+        TYPES.add(IDENTIFIER);
+        TYPES.add(UNKNOWN);
     }
 
     public static LexicalObjectType detectType(String value) {
@@ -26,6 +37,39 @@ public class TypeDetector {
                 return type;
             }
         }
-        return new UnknownType();
+        return UNKNOWN;
+    }
+
+    /**
+     * Определяет тип односимвольного оператора без регулярных выражений
+     * @return тип оператора или null, если символ не является оператором
+     */
+    public static LexicalObjectType detectOperatorType(char c) {
+        switch (c) {
+            case '(': return OPEN_BRACKET;
+            case ')': return CLOSE_BRACKET;
+            case '+': return PLUS;
+            case '-': return MINUS;
+            case '*': return MULTIPLY;
+            case '/': return DIVIDE;
+            default: return null;
+        }
+    }
+
+    /**
+     * Тип лексемы по ее виду: у каждого вида ровно один экземпляр типа
+     */
+    public static LexicalObjectType typeOf(TokenKind kind) {
+        switch (kind) {
+            case OPEN_BRACKET: return OPEN_BRACKET;
+            case CLOSE_BRACKET: return CLOSE_BRACKET;
+            case PLUS: return PLUS;
+            case MINUS: return MINUS;
+            case MULTIPLY: return MULTIPLY;
+            case DIVIDE: return DIVIDE;
+            case NUMBER: return NUMBER;
+            case IDENTIFIER: return IDENTIFIER;
+            default: return UNKNOWN;
+        }
     }
 }
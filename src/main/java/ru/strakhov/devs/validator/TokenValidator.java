@@ -3,15 +3,32 @@ package ru.strakhov.devs.validator;
 import ru.strakhov.devs.exception.IdentifierException;
 import ru.strakhov.devs.exception.IllegalConstantTypeException;
 import ru.strakhov.devs.exception.IllegalSymbolException;
-import ru.strakhov.devs.lexical_object.type.IdentifierType;
-import ru.strakhov.devs.lexical_object.type.NumberType;
-
-import java.util.Set;
-import java.util.regex.Pattern;
+import ru.strakhov.devs.utils.TypeDetector;
 
 public class TokenValidator {
-    private static final Pattern ALLOWED_SYMBOL_PATTERN = Pattern.compile("[a-zA-Z0-9_.]");
-    private static final Set<Character> OPERATORS = Set.of('+', '-', '*', '/', '(', ')');
+    // Классы символов ASCII; всё, что выше 127, считается недопустимым
+    public static final byte INVALID = 0;
+    public static final byte WHITESPACE = 1;
+    public static final byte OPERATOR = 2;
+    public static final byte DIGIT = 3;
+    public static final byte LETTER = 4;
+    public static final byte UNDERSCORE = 5;
+    public static final byte DOT = 6;
+    public static final byte OPEN_SQUARE = 7;
+    public static final byte CLOSE_SQUARE = 8;
+
+    private static final byte[] CHAR_CLASSES = new byte[128];
+    static {
+        for (char c : " \t\n\u000B\f\r".toCharArray()) CHAR_CLASSES[c] = WHITESPACE;
+        for (char c : "+-*/()".toCharArray()) CHAR_CLASSES[c] = OPERATOR;
+        for (char c = '0'; c <= '9'; c++) CHAR_CLASSES[c] = DIGIT;
+        for (char c = 'a'; c <= 'z'; c++) CHAR_CLASSES[c] = LETTER;
+        for (char c = 'A'; c <= 'Z'; c++) CHAR_CLASSES[c] = LETTER;
+        CHAR_CLASSES['_'] = UNDERSCORE;
+        CHAR_CLASSES['.'] = DOT;
+        CHAR_CLASSES['['] = OPEN_SQUARE;
+        CHAR_CLASSES[']'] = CLOSE_SQUARE;
+    }
 
     public static void validateString(String input, int inLinePosition) {
         // Проверяем, является ли это идентификатором с типом в квадратных скобках
@@ -20,37 +37,33 @@ public class TokenValidator {
             int bracketIndex = input.indexOf('[');
             String varName = input.substring(0, bracketIndex);
             String typePart = input.substring(bracketIndex);
-            
+
             // Проверяем имя переменной
             for (int i = 0; i < varName.length(); i++) {
                 char c = varName.charAt(i);
                 if (!isValidSymbol(c)) {
-                    throw new IllegalSymbolException(
-                            String.format("Недопустимый символ «%s» на позиции %d", c, inLinePosition + i)
-                    );
+                    throw illegalSymbol(c, inLinePosition + i);
                 }
             }
-            
+
             // Проверяем часть с типом [f], [F], [i], или [I]
             if (!typePart.matches("\\[[fFiI]\\]")) {
                 throw new IllegalSymbolException(
-                        String.format("Неправильный формат типа переменной «%s» на позиции %d. Используйте [f], [F], [i] или [I]", 
+                        String.format("Неправильный формат типа переменной «%s» на позиции %d. Используйте [f], [F], [i] или [I]",
                                 typePart, inLinePosition + bracketIndex)
                 );
             }
-            
+
             TokenValidator.validateFullString(varName, inLinePosition);
             return;
         }
-        
+
         // Обычная валидация
         for (int i = 0; i < input.length(); i++) {
             char c = input.charAt(i);
 
             if (!isValidSymbol(c)) {
-                throw new IllegalSymbolException(
-                        String.format("Недопустимый символ «%s» на позиции %d", c, inLinePosition + i)
-                );
+                throw illegalSymbol(c, inLinePosition + i);
             }
         }
         TokenValidator.validateFullString(input, inLinePosition);
@@ -62,27 +75,47 @@ public class TokenValidator {
 
         if (containsDigit && !containsLetter) {
             if (!isStringTrueDigit(input)) {
-                throw new IllegalConstantTypeException(
-                        String.format("Неправильно задана константа «%s» на позиции %d", input, inLinePosition)
-                );
+                throw illegalConstant(input, inLinePosition);
             }
         } else if (containsDigit && containsLetter) {
-            if (!new IdentifierType().getPattern().matcher(input).matches()) {
-                throw new IdentifierException(
-                        String.format("Идентификатор «%s» не может начинаться с цифры на позиции: %d", input, inLinePosition)
-                );
+            if (!TypeDetector.IDENTIFIER.getPattern().matcher(input).matches()) {
+                throw illegalIdentifier(input, inLinePosition);
             }
         }
     }
 
     private static boolean isStringTrueDigit(String input) {
-        return new NumberType().getPattern().matcher(input).matches();
+        return TypeDetector.NUMBER.getPattern().matcher(input).matches();
     }
 
-    private static boolean isValidSymbol(char c) {
-        return OPERATORS.contains(c) ||
-                ALLOWED_SYMBOL_PATTERN.matcher(String.valueOf(c)).matches() ||
-                c == '[' || c == ']'; // Разрешаем квадратные скобки для типов переменных
+    /**
+     * Возвращает класс символа по таблице, без регулярных выражений и аллокаций
+     */
+    public static byte charClass(char c) {
+        return c < CHAR_CLASSES.length ? CHAR_CLASSES[c] : INVALID;
     }
 
+    public static boolean isValidSymbol(char c) {
+        byte charClass = charClass(c);
+        // Пробельные символы к этому моменту уже вырезаны из входной строки
+        return charClass != INVALID && charClass != WHITESPACE;
+    }
+
+    public static IllegalSymbolException illegalSymbol(char c, int position) {
+        return new IllegalSymbolException(
+                String.format("Недопустимый символ «%s» на позиции %d", c, position)
+        );
+    }
+
+    public static IllegalConstantTypeException illegalConstant(String input, int position) {
+        return new IllegalConstantTypeException(
+                String.format("Неправильно задана константа «%s» на позиции %d", input, position)
+        );
+    }
+
+    public static IdentifierException illegalIdentifier(String input, int position) {
+        return new IdentifierException(
+                String.format("Идентификатор «%s» не может начинаться с цифры на позиции: %d", input, position)
+        );
+    }
 }
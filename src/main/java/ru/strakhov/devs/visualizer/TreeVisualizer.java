@@ -1,38 +1,87 @@
 package ru.strakhov.devs.visualizer;
 
+import ru.strakhov.devs.parser.syntax.SyntaxTree;
 import ru.strakhov.devs.parser.syntax.SyntaxTreeNode;
 
-import java.util.List;
-
 import ru.strakhov.devs.manager.IOFileManager;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
 public class TreeVisualizer {
 
     public static void printTreeToFile(SyntaxTreeNode root, String filename) {
-        StringBuilder builder = new StringBuilder();
-        printTreeRecursive(root, "", true, builder);
-        IOFileManager.createFile(filename, builder.toString());
+        if (root == null) {
+            IOFileManager.createFile(filename, "");
+            return;
+        }
+        printTreeToFile(SyntaxTree.of(root), filename);
     }
 
-    private static void printTreeRecursive(SyntaxTreeNode node, String prefix, boolean isLast, StringBuilder builder) {
-        if (node == null) return;
+    public static void printTreeToFile(SyntaxTree tree, String filename) {
+        IOFileManager.writeFile(filename, out -> printTree(tree, out));
+    }
 
-        builder.append(prefix)
-                .append(isLast ? "└── " : "├── ")
-                .append("<")
-                .append(node.getValue())
-                .append(">")
-                .append("\n");
+    public static String printTree(SyntaxTreeNode root) {
+        if (root == null) return "";
+        return printTree(SyntaxTree.of(root));
+    }
 
-        List<SyntaxTreeNode> children = node.getChildren();
-        if (children == null || children.isEmpty()) {
-            return;
-        }
+    public static String printTree(SyntaxTree tree) {
+        return IOFileManager.render(out -> printTree(tree, out));
+    }
+
+    /**
+     * Пишет дерево в поток построчно, не собирая весь текст в памяти
+     */
+    public static void printTree(SyntaxTree tree, Writer out) throws IOException {
+        if (tree.size() == 0) return;
+
+        // Явный стек вместо рекурсии: у каждого узла уровень и признак последнего потомка.
+        // Префикс не хранится для каждого узла: при обходе в глубину предки снимаемого узла —
+        // это текущий путь, поэтому достаточно одного буфера по 4 символа на уровень
+        int[] nodes = new int[tree.size()];
+        int[] levels = new int[tree.size()];
+        boolean[] lastFlags = new boolean[tree.size()];
+        char[] prefix = new char[64];
+        int depth = 0;
+        nodes[depth] = tree.root();
+        levels[depth] = 0;
+        lastFlags[depth] = true;
+        depth++;
+
+        while (depth > 0) {
+            depth--;
+            int node = nodes[depth];
+            int level = levels[depth];
+            boolean isLast = lastFlags[depth];
+
+            out.write(prefix, 0, level * 4);
+            out.write(isLast ? "└── <" : "├── <");
+            out.write(tree.label(node));
+            out.write(">\n");
+
+            if (tree.isLeaf(node)) {
+                continue;
+            }
 
-        for (int i = 0; i < children.size(); i++) {
-            boolean isLastChild = (i == children.size() - 1);
-            String newPrefix = prefix + (isLast ? "    " : "│   ");
-            printTreeRecursive(children.get(i), newPrefix, isLastChild, builder);
+            if ((level + 1) * 4 > prefix.length) {
+                prefix = Arrays.copyOf(prefix, prefix.length * 2);
+            }
+            (isLast ? "    " : "│   ").getChars(0, 4, prefix, level * 4);
+            // Потомки кладутся в обратном порядке, чтобы первым напечатался левый
+            int right = tree.right(node);
+            if (right != SyntaxTree.NONE) {
+                nodes[depth] = right;
+                levels[depth] = level + 1;
+                lastFlags[depth] = true;
+                depth++;
+            }
+            nodes[depth] = tree.left(node);
+            levels[depth] = level + 1;
+            lastFlags[depth] = right == SyntaxTree.NONE;
+            depth++;
         }
     }
 }
@@ -0,0 +1,287 @@
+package ru.strakhov.devs.workload;
+
+import ru.strakhov.devs.lexical_object.entity.VariableType;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Детерминированный генератор выражений для нагрузочных тестов и бенчмарков.
+ * При одинаковых параметрах и зерне выдает один и тот же текст.
+ * <p>
+ * Выражение собирается из «гнезд» глубины {@link #setDepth}: {@code ((x + y) * z)}.
+ * Гнезда соединяются в дерево заданной {@link WorkloadShape формы}; часть гнезд
+ * может повторять уже выданные подвыражения. Идентификаторы — {@code v<номер>} с аннотацией
+ * {@code [f]}/{@code [i]}; тип идентификатора фиксирован по его номеру, поэтому аннотации
+ * никогда не противоречат друг другу. Делитель — всегда лист и никогда не константа 0,
+ * так что выражение проходит семантический анализ.
+ * <p>
+ * Выражение пишется в поток по мере генерации, поэтому его размер ограничен только диском;
+ * число токенов и тип результата считаются по ходу записи.
+ */
+public class ExpressionGenerator {
+    private static final char[] OPERATORS = {'+', '-', '*', '/'};
+    private static final int COMBINING_OPERATORS = 3; // Без деления: справа может быть не лист
+    private static final int REPEAT_POOL_SIZE = 64;
+    private static final int FLUSH_THRESHOLD = 8192;
+
+    private final Random random;
+    private WorkloadShape shape = WorkloadShape.BALANCED;
+    private int depth;
+    private int identifiers = 1024;
+    private double floatShare = 0.5;
+    private double constantShare = 0.25;
+    private double repeatShare;
+    private double negationShare = 0.05;
+
+    // Ранее выданные гнезда для повторяющихся подвыражений
+    private final String[] repeatTexts = new String[REPEAT_POOL_SIZE];
+    private final int[] repeatTokens = new int[REPEAT_POOL_SIZE];
+    private final boolean[] repeatFloats = new boolean[REPEAT_POOL_SIZE];
+    private int repeatCount;
+
+    private final StringBuilder nest = new StringBuilder();
+    private final StringBuilder chunk = new StringBuilder(FLUSH_THRESHOLD * 2);
+    private Writer out;
+    private long tokenCount;
+    private boolean hasFloat;
+
+    public ExpressionGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public void setShape(WorkloadShape shape) {
+        this.shape = shape;
+    }
+
+    /**
+     * Глубина вложенности скобок внутри каждого гнезда; 0 — гнездо из одного операнда
+     */
+    public void setDepth(int depth) {
+        if (depth < 0) throw new IllegalArgumentException("Глубина не может быть отрицательной: " + depth);
+        this.depth = depth;
+    }
+
+    /**
+     * Число различных идентификаторов
+     */
+    public void setIdentifiers(int identifiers) {
+        if (identifiers < 1) throw new IllegalArgumentException("Нужен хотя бы один идентификатор: " + identifiers);
+        this.identifiers = identifiers;
+    }
+
+    /**
+     * Доля вещественных идентификаторов и констант, от 0 до 1
+     */
+    public void setFloatShare(double floatShare) {
+        this.floatShare = checkShare(floatShare);
+    }
+
+    /**
+     * Доля констант среди операндов, от 0 до 1
+     */
+    public void setConstantShare(double constantShare) {
+        this.constantShare = checkShare(constantShare);
+    }
+
+    /**
+     * Доля гнезд, повторяющих одно из ранее выданных подвыражений, от 0 до 1
+     */
+    public void setRepeatShare(double repeatShare) {
+        this.repeatShare = checkShare(repeatShare);
+    }
+
+    /**
+     * Доля гнезд с унарным минусом, от 0 до 1
+     */
+    public void setNegationShare(double negationShare) {
+        this.negationShare = checkShare(negationShare);
+    }
+
+    /**
+     * Генерирует выражение примерно из {@code tokens} токенов и возвращает его вместе с текстом
+     */
+    public WorkloadCase generate(int tokens) {
+        StringWriter writer = new StringWriter();
+        try {
+            WorkloadCase result = this.generate(tokens, writer);
+            return new WorkloadCase(writer.toString(), result.getTokenCount(), result.getResultType());
+        } catch (IOException e) {
+            // StringWriter не бросает IOException
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Пишет выражение примерно из {@code tokens} токенов в поток. Точное число токенов
+     * и тип результата — в возвращаемом описании; текст в нем не сохраняется
+     */
+    public WorkloadCase generate(long tokens, Writer out) throws IOException {
+        this.out = out;
+        tokenCount = 0;
+        hasFloat = false;
+
+        // Гнездо занимает 4 * depth + 1 токен; звено между гнездами — операция и, кроме
+        // цепочки без скобок, пара скобок
+        long nestTokens = 4L * depth + 1;
+        long linkTokens = shape == WorkloadShape.LEFT_SKEWED ? 1 : 3;
+        long nests = Math.max(1, (tokens + linkTokens) / (nestTokens + linkTokens));
+        switch (shape) {
+            case BALANCED:
+                this.appendBalanced(nests, true);
+                break;
+            case LEFT_SKEWED:
+                this.appendLeftSkewed(nests);
+                break;
+            case RIGHT_SKEWED:
+                this.appendRightSkewed(nests);
+                break;
+        }
+        this.flush();
+        this.out = null;
+        return new WorkloadCase(null, tokenCount, hasFloat ? VariableType.FLOAT : VariableType.INTEGER);
+    }
+
+    /**
+     * Рекурсия только по сбалансированной части, ее глубина — логарифм от числа гнезд
+     */
+    private void appendBalanced(long nests, boolean root) throws IOException {
+        if (nests == 1) {
+            this.appendNest();
+            return;
+        }
+        if (!root) this.appendToken("(");
+        this.appendBalanced(nests / 2, false);
+        this.appendOperator(COMBINING_OPERATORS);
+        this.appendBalanced(nests - nests / 2, false);
+        if (!root) this.appendToken(")");
+    }
+
+    private void appendLeftSkewed(long nests) throws IOException {
+        this.appendNest();
+        for (long i = 1; i < nests; i++) {
+            // Правый операнд — само гнездо; делить можно, только если гнездо — лист
+            this.appendOperator(depth == 0 ? OPERATORS.length : COMBINING_OPERATORS);
+            this.appendNest();
+        }
+    }
+
+    private void appendRightSkewed(long nests) throws IOException {
+        this.appendNest();
+        for (long i = 1; i < nests - 1; i++) {
+            this.appendOperator(COMBINING_OPERATORS);
+            this.appendToken("(");
+            this.appendNest();
+        }
+        if (nests > 1) {
+            this.appendOperator(depth == 0 ? OPERATORS.length : COMBINING_OPERATORS);
+            this.appendNest();
+        }
+        for (long i = 1; i < nests - 1; i++) {
+            this.appendToken(")");
+        }
+    }
+
+    private void appendNest() throws IOException {
+        if (random.nextDouble() < negationShare) {
+            this.appendToken("-");
+        }
+        if (repeatCount > 0 && random.nextDouble() < repeatShare) {
+            int index = random.nextInt(Math.min(repeatCount, REPEAT_POOL_SIZE));
+            chunk.append(repeatTexts[index]);
+            tokenCount += repeatTokens[index];
+            hasFloat |= repeatFloats[index];
+            this.flushIfFull();
+            return;
+        }
+
+        nest.setLength(0);
+        boolean nestFloat = false;
+        for (int i = 0; i < depth; i++) {
+            nest.append('(');
+        }
+        nestFloat |= this.appendOperand();
+        for (int i = 0; i < depth; i++) {
+            nest.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+            nestFloat |= this.appendOperand();
+            nest.append(')');
+        }
+        int nestTokens = 4 * depth + 1;
+
+        int slot = repeatCount++ % REPEAT_POOL_SIZE;
+        repeatTexts[slot] = nest.toString();
+        repeatTokens[slot] = nestTokens;
+        repeatFloats[slot] = nestFloat;
+
+        chunk.append(nest);
+        tokenCount += nestTokens;
+        hasFloat |= nestFloat;
+        this.flushIfFull();
+    }
+
+    /**
+     * Дописывает в гнездо константу или идентификатор
+     * @return true, если операнд вещественный
+     */
+    private boolean appendOperand() {
+        if (random.nextDouble() < constantShare) {
+            // Константы от 1 до 99: ноль в делителе не пройдет семантический анализ
+            boolean isFloat = random.nextDouble() < floatShare;
+            nest.append(1 + random.nextInt(99));
+            if (isFloat) {
+                nest.append('.').append(random.nextInt(10));
+            }
+            return isFloat;
+        }
+        int id = random.nextInt(identifiers);
+        boolean isFloat = isFloatIdentifier(id);
+        nest.append('v').append(id);
+        // Аннотация необязательна только у целых: без нее идентификатор целый
+        int annotation = random.nextInt(3);
+        if (isFloat) {
+            nest.append(annotation == 0 ? "[F]" : "[f]");
+        } else if (annotation == 1) {
+            nest.append("[i]");
+        } else if (annotation == 2) {
+            nest.append("[I]");
+        }
+        return isFloat;
+    }
+
+    private boolean isFloatIdentifier(int id) {
+        return Integer.remainderUnsigned(id * 0x9E3779B9, 1000) < floatShare * 1000;
+    }
+
+    private void appendOperator(int operatorCount) throws IOException {
+        chunk.append(' ').append(OPERATORS[random.nextInt(operatorCount)]).append(' ');
+        tokenCount++;
+        this.flushIfFull();
+    }
+
+    private void appendToken(String token) throws IOException {
+        chunk.append(token);
+        tokenCount++;
+        this.flushIfFull();
+    }
+
+    private void flushIfFull() throws IOException {
+        if (chunk.length() >= FLUSH_THRESHOLD) {
+            this.flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        out.append(chunk);
+        chunk.setLength(0);
+    }
+
+    private static double checkShare(double share) {
+        if (!(share >= 0 && share <= 1)) {
+            throw new IllegalArgumentException("Доля должна быть от 0 до 1: " + share);
+        }
+        return share;
+    }
+}
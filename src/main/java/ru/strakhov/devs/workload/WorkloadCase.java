@@ -0,0 +1,39 @@
+package ru.strakhov.devs.workload;
+
+import ru.strakhov.devs.lexical_object.entity.VariableType;
+
+/**
+ * Сгенерированное выражение и ожидаемые результаты его компиляции
+ */
+public class WorkloadCase {
+    private final String expression;
+    private final long tokenCount;
+    private final VariableType resultType;
+
+    WorkloadCase(String expression, long tokenCount, VariableType resultType) {
+        this.expression = expression;
+        this.tokenCount = tokenCount;
+        this.resultType = resultType;
+    }
+
+    /**
+     * Текст выражения или null, если выражение было записано сразу в поток
+     */
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * Число токенов, которое выдаст лексический анализатор
+     */
+    public long getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Тип результата выражения после семантического анализа
+     */
+    public VariableType getResultType() {
+        return resultType;
+    }
+}
@@ -0,0 +1,13 @@
+package ru.strakhov.devs.workload;
+
+/**
+ * Форма дерева генерируемого выражения
+ */
+public enum WorkloadShape {
+    /** Поддеревья соединяются попарно в скобках: высота дерева — логарифм от размера */
+    BALANCED,
+    /** Цепочка a + b * c - ... без скобок: дерево вырождается в левую ветвь */
+    LEFT_SKEWED,
+    /** a + (b * (c - ...)): вложенность скобок растет с размером выражения */
+    RIGHT_SKEWED
+}